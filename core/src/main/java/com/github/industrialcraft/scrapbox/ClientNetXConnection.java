@@ -7,13 +7,21 @@ import com.github.industrialcraft.scrapbox.client.DisconnectedScene;
 import com.github.industrialcraft.scrapbox.client.InGameScene;
 import com.github.industrialcraft.scrapbox.client.ScrapBox;
 import com.github.industrialcraft.scrapbox.common.net.IConnection;
+import com.github.industrialcraft.scrapbox.common.net.MessageRegistryCreator;
+import com.github.industrialcraft.scrapbox.common.net.msg.MessageBatch;
+import com.github.industrialcraft.scrapbox.common.net.msg.UdpChannelInfo;
 
+import java.net.SocketException;
 import java.util.ArrayList;
 
 public class ClientNetXConnection implements IConnection {
     public final NetXClient client;
-    public ClientNetXConnection(NetXClient client) {
+    public final String host;
+    private ClientUdpChannel udpChannel;
+    public ClientNetXConnection(NetXClient client, String host) {
         this.client = client;
+        this.host = host;
+        this.udpChannel = null;
     }
     @Override
     public void send(Object message) {
@@ -27,19 +35,52 @@ public class ClientNetXConnection implements IConnection {
         while(this.client.visitMessage(new ClientMessage.Visitor() {
             @Override
             public void message(NetXClient user, Object msg) {
-                messages.add(msg);
+                if(msg instanceof MessageBatch){
+                    messages.addAll(((MessageBatch) msg).messages);
+                } else {
+                    messages.add(msg);
+                }
             }
             @Override
             public void disconnect(NetXClient user) {
+                closeUdp();
                 ScrapBox.getInstance().setScene(new DisconnectedScene("connection lost"));
             }
             @Override
             public void exception(NetXClient user, Throwable exception) {
+                closeUdp();
                 ScrapBox.getInstance().setScene(new DisconnectedScene("exception: " + exception.getLocalizedMessage()));
             }
         }));
+        for(Object message : messages){
+            if(message instanceof UdpChannelInfo){
+                openUdp((UdpChannelInfo) message);
+            }
+        }
+        if(this.udpChannel != null){
+            this.udpChannel.received.drainTo(messages);
+        }
         return messages;
     }
+    private void openUdp(UdpChannelInfo udpChannelInfo){
+        closeUdp();
+        try {
+            this.udpChannel = new ClientUdpChannel(this.host, udpChannelInfo.port, udpChannelInfo.token, MessageRegistryCreator.createCodec());
+        } catch (SocketException e) {
+            //everything keeps arriving over the stream
+            this.udpChannel = null;
+        }
+    }
+    @Override
+    public void close() {
+        closeUdp();
+    }
+    private void closeUdp(){
+        if(this.udpChannel != null){
+            this.udpChannel.close();
+            this.udpChannel = null;
+        }
+    }
     public void waitForConnect(){
         this.client.visitMessage(new ClientMessage.Visitor() {
             @Override
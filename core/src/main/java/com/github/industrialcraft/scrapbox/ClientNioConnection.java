@@ -0,0 +1,104 @@
+package com.github.industrialcraft.scrapbox;
+
+import com.github.industrialcraft.scrapbox.client.DisconnectedScene;
+import com.github.industrialcraft.scrapbox.client.InGameScene;
+import com.github.industrialcraft.scrapbox.client.ScrapBox;
+import com.github.industrialcraft.scrapbox.common.net.IConnection;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.MessageRegistryCreator;
+import com.github.industrialcraft.scrapbox.common.net.nio.NioConnection;
+import com.github.industrialcraft.scrapbox.common.net.nio.NioTransport;
+import com.github.industrialcraft.scrapbox.common.net.msg.UdpChannelInfo;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.ArrayList;
+
+/**
+ * Client end of a server running the NIO transport. Connecting happens on a thread of its own, the connecting scene
+ * polls {@link #waitForConnect()} until it is done.
+ */
+public class ClientNioConnection implements IConnection {
+    public final String host;
+    private final MessageCodec codec;
+    private volatile NioTransport transport;
+    private volatile NioConnection connection;
+    private volatile IOException connectException;
+    private ClientUdpChannel udpChannel;
+    private boolean lost;
+    public ClientNioConnection(String host, int port) {
+        this.host = host;
+        this.codec = MessageRegistryCreator.createCodec();
+        this.udpChannel = null;
+        this.lost = false;
+        Thread connector = new Thread(() -> {
+            try {
+                NioTransport transport = new NioTransport(this.codec);
+                this.transport = transport;
+                this.connection = transport.connect(host, port);
+            } catch (IOException e) {
+                if(this.transport != null){
+                    this.transport.close();
+                }
+                this.connectException = e;
+            }
+        }, "nio connect");
+        connector.setDaemon(true);
+        connector.start();
+    }
+    @Override
+    public void send(Object message) {
+        this.connection.send(message);
+    }
+    @Override
+    public void flush() {
+        this.connection.flush();
+    }
+    @Override
+    public ArrayList<Object> read() {
+        ArrayList<Object> messages = this.connection.read();
+        if(this.connection.isClosed() && !this.lost){
+            this.lost = true;
+            closeUdp();
+            ScrapBox.getInstance().setScene(new DisconnectedScene("connection lost"));
+        }
+        for(Object message : messages){
+            if(message instanceof UdpChannelInfo){
+                openUdp((UdpChannelInfo) message);
+            }
+        }
+        if(this.udpChannel != null){
+            this.udpChannel.received.drainTo(messages);
+        }
+        return messages;
+    }
+    private void openUdp(UdpChannelInfo udpChannelInfo){
+        closeUdp();
+        try {
+            this.udpChannel = new ClientUdpChannel(this.host, udpChannelInfo.port, udpChannelInfo.token, this.codec);
+        } catch (SocketException e) {
+            //everything keeps arriving over the stream
+            this.udpChannel = null;
+        }
+    }
+    private void closeUdp(){
+        if(this.udpChannel != null){
+            this.udpChannel.close();
+            this.udpChannel = null;
+        }
+    }
+    public void waitForConnect(){
+        if(this.connection != null){
+            ScrapBox.getInstance().setScene(new InGameScene(this, null, null));
+        } else if(this.connectException != null){
+            ScrapBox.getInstance().setScene(new DisconnectedScene("connecting failed: " + this.connectException.getLocalizedMessage()));
+        }
+    }
+    @Override
+    public void close() {
+        closeUdp();
+        if(this.transport != null){
+            this.transport.close();
+        }
+    }
+}
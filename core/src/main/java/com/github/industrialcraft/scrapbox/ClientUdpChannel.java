@@ -0,0 +1,83 @@
+package com.github.industrialcraft.scrapbox;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.SpscRingBuffer;
+import com.github.industrialcraft.scrapbox.server.UdpChannel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Client end of {@link UdpChannel}. A hello is sent whenever nothing arrived for {@link #HELLO_INTERVAL}
+ * milliseconds, which also keeps NAT mappings alive. Datagrams older than the newest one received are dropped.
+ */
+public class ClientUdpChannel {
+    public static final int HELLO_INTERVAL = 500;
+    public static final int RECEIVE_CAPACITY = 256;
+
+    private final DatagramSocket socket;
+    private final InetSocketAddress server;
+    private final long token;
+    private final MessageCodec codec;
+    public final SpscRingBuffer<Object> received;
+    private final Thread receiver;
+    public ClientUdpChannel(String host, int port, long token, MessageCodec codec) throws SocketException {
+        this.socket = new DatagramSocket();
+        this.socket.setSoTimeout(HELLO_INTERVAL);
+        this.server = new InetSocketAddress(host, port);
+        this.token = token;
+        this.codec = codec;
+        this.received = new SpscRingBuffer<>(RECEIVE_CAPACITY);
+        this.receiver = new Thread(this::receive, "udp receiver");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+    private void sendHello() throws IOException {
+        ByteArrayOutputStream hello = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(hello);
+        stream.writeInt(UdpChannel.MAGIC);
+        stream.writeLong(this.token);
+        this.socket.send(new DatagramPacket(hello.toByteArray(), hello.size(), this.server));
+    }
+    private void receive(){
+        byte[] buffer = new byte[UdpChannel.MAX_DATAGRAM_SIZE];
+        int lastSequence = -1;
+        try {
+            sendHello();
+        } catch (IOException ignored){}
+        while(!this.socket.isClosed()){
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                this.socket.receive(packet);
+                DataInputStream stream = new DataInputStream(new ByteArrayInputStream(packet.getData(), 0, packet.getLength()));
+                if(stream.readInt() != UdpChannel.MAGIC){
+                    continue;
+                }
+                int sequence = stream.readInt();
+                if(sequence <= lastSequence){
+                    continue;
+                }
+                lastSequence = sequence;
+                //a full queue drops the datagram like the network could have
+                this.received.offer(this.codec.read(stream));
+            } catch (SocketTimeoutException e){
+                try {
+                    sendHello();
+                } catch (IOException ignored){}
+            } catch (IOException ignored){
+                //malformed datagram or the socket got closed
+            }
+        }
+    }
+    public void close(){
+        this.socket.close();
+    }
+}
@@ -38,20 +38,26 @@ public class ClientGameObject {
         this.lastAnimationData = message.animation;
         this.internalRendererData = null;
     }
-    public void move(MoveGameObjectMessage message){
+    /**
+     * @param updateLength time since the previous snapshot, bodies left out of snapshots keep their last state
+     */
+    public void move(MoveGameObjectMessage message, int updateLength){
         this.lastPosition = this.position;
         this.position = message.position;
         this.lastRotation = this.rotation;
         this.rotation = message.rotation;
         this.mode = message.mode;
         this.selected = message.selected;
-        this.lastUpdateLength = (int) (System.currentTimeMillis() - this.lastUpdate);
+        this.lastUpdateLength = updateLength;
         this.lastUpdate = System.currentTimeMillis();
         this.lastAnimationData = this.animationData;
-        this.animationData = message.animation;
+        this.animationData = this.animationData.applyDelta(message.animation);
     }
     private float getProgress(){
-        return ((float)(System.currentTimeMillis() - this.lastUpdate))/this.lastUpdateLength;
+        if(this.lastUpdateLength <= 0){
+            return 1;
+        }
+        return Math.min(((float)(System.currentTimeMillis() - this.lastUpdate))/this.lastUpdateLength, 1);
     }
     public Vector2 getRealPosition(){
         return this.lastPosition.cpy().lerp(this.position, getProgress());
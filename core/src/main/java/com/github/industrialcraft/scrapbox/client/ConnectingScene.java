@@ -8,6 +8,7 @@ import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.github.industrialcraft.netx.NetXClient;
 import com.github.industrialcraft.scrapbox.ClientNetXConnection;
+import com.github.industrialcraft.scrapbox.ClientNioConnection;
 import com.github.industrialcraft.scrapbox.common.net.IConnection;
 
 public class ConnectingScene extends StageBasedScreen {
@@ -29,6 +30,10 @@ public class ConnectingScene extends StageBasedScreen {
     @Override
     public void render() {
         super.render();
-        ((ClientNetXConnection)connection).waitForConnect();
+        if(connection instanceof ClientNioConnection){
+            ((ClientNioConnection)connection).waitForConnect();
+        } else {
+            ((ClientNetXConnection)connection).waitForConnect();
+        }
     }
 }
@@ -28,6 +28,7 @@ import com.badlogic.gdx.scenes.scene2d.utils.DragAndDrop;
 import com.github.industrialcraft.netx.NetXClient;
 import com.github.industrialcraft.scrapbox.common.editui.EditorUILink;
 import com.github.industrialcraft.scrapbox.common.net.IConnection;
+import com.github.industrialcraft.scrapbox.common.net.LocalConnection;
 import com.github.industrialcraft.scrapbox.common.net.msg.*;
 import com.github.industrialcraft.scrapbox.server.Server;
 import com.github.industrialcraft.scrapbox.server.game.FrameGameObject;
@@ -57,13 +58,20 @@ public class InGameScene implements IScene {
     public HashMap<Integer,ClientGameObjectEditor> editors;
     public DragAndDrop dragAndDrop;
     private ControllingData controllingData;
-    private ArrayList<SendConnectionListData.Connection> connectionsShowcase;
+    private HashMap<ConnectionMarkers.Marker, ConnectionMarkers.Marker> connectionMarkers;
+    private boolean connectionOverlaySubscribed;
     private Texture jointBreakIcon;
     private boolean[] controllerState;
     private Texture controllerButton;
     private BitmapFont font;
     private static final float JOINT_BREAK_ICON_SIZE = 48;
     private static final float CONTROLLER_BUTTON_SIZE = 80;
+    //longest interpolation between two snapshots, after an idle period the next one should not crawl in
+    private static final long MAX_SNAPSHOT_INTERVAL = 100;
+    private long lastSnapshotTime;
+    private int lastSnapshotSequence;
+    private static final float VIEWPORT_UPDATE_DISTANCE = 1;
+    private ViewportUpdate lastViewport;
     public Dialog escapeMenu;
     private TextureRegion puncherSpringTexture;
     public InGameScene(IConnection connection, Server server, NetXClient client) {
@@ -87,12 +95,14 @@ public class InGameScene implements IScene {
             float length = gameObject.getAnimationNumber("length", 3);
             int otherId = Integer.parseInt(gameObject.getAnimationString("other", "0"));
             renderData.draw(batch1, gameObject);
-            if(otherId > gameObject.id){
+            ClientGameObject other = gameObjects.get(otherId);
+            //the other end may be outside of the replicated area
+            if(otherId > gameObject.id && other != null){
                 batch1.end();
                 shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
                 shapeRenderer.setColor(217f/255f, 160f/255f, 100f/255f, 1f);
                 Vector2 first = gameObject.getRealPosition();
-                Vector2 second = gameObjects.get(otherId).getRealPosition();
+                Vector2 second = other.getRealPosition();
                 Bezier<Vector2> bezier = new Bezier<>(first, new Vector2((first.x+second.x)/2f, (first.y+second.y)/2f-(length-first.dst(second))), second);
                 Vector2 previous = gameObject.getRealPosition();
                 for(float n = 0;n < 1;n+=0.01f) {
@@ -196,7 +206,10 @@ public class InGameScene implements IScene {
         addTerrainType("dirt", "dirt.png");
         addTerrainType("stone", "stone.png");
         addTerrainType("ice", "ice.png");
-        this.connectionsShowcase = new ArrayList<>();
+        this.connectionMarkers = new HashMap<>();
+        this.connectionOverlaySubscribed = false;
+        this.lastSnapshotTime = System.currentTimeMillis();
+        this.lastSnapshotSequence = -1;
         this.jointBreakIcon = new Texture("joint_break_icon.png");
         this.controllerState = new boolean[10];
         this.controllerButton = new Texture("controller_button.png");
@@ -244,9 +257,10 @@ public class InGameScene implements IScene {
                     if(toolBox.tool == ToolBox.Tool.Hand && Gdx.input.isKeyPressed(Input.Keys.B)){
                         Vector3 mouse = cameraController.camera.unproject(new Vector3(Gdx.input.getX(), Gdx.input.getY(), 0));
                         Vector2 mouse2 = new Vector2(mouse.x, mouse.y);
-                        for(SendConnectionListData.Connection connection1 : connectionsShowcase){
-                            if(mouse2.dst(connection1.position.cpy().scl(BOX_TO_PIXELS_RATIO)) < JOINT_BREAK_ICON_SIZE/2){
-                                connection.send(new DestroyJoint(connection1.gameObjectId, connection1.name));
+                        for(ConnectionMarkers.Marker marker : connectionMarkers.values()){
+                            Vector2 position = getMarkerPosition(marker);
+                            if(position != null && mouse2.dst(position.scl(BOX_TO_PIXELS_RATIO)) < JOINT_BREAK_ICON_SIZE/2){
+                                connection.send(new DestroyJoint(marker.gameObjectId, marker.name));
                             }
                         }
                     }
@@ -311,16 +325,37 @@ public class InGameScene implements IScene {
     public void render() {
         Gdx.gl.glClearColor(79f / 255f, 201f / 255f, 232f / 255f, 1f);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        if(connection instanceof LocalConnection && ((LocalConnection) connection).isClosed()){
+            ScrapBox.getInstance().setScene(new DisconnectedScene("local server closed the connection, the game fell too far behind"));
+            return;
+        }
         for(Object message : connection.read()){
             if(message instanceof AddGameObjectMessage){
                 AddGameObjectMessage addGameObjectMessage = (AddGameObjectMessage) message;
                 gameObjects.put(addGameObjectMessage.id, new ClientGameObject(addGameObjectMessage));
             }
-            if(message instanceof MoveGameObjectMessage){
-                MoveGameObjectMessage moveGameObjectMessage = (MoveGameObjectMessage) message;
-                ClientGameObject gameObject = gameObjects.get(moveGameObjectMessage.id);
-                if(gameObject != null){
-                    gameObject.move(moveGameObjectMessage);
+            if(message instanceof WorldSnapshot){
+                WorldSnapshot worldSnapshot = (WorldSnapshot) message;
+                //snapshots can come over datagrams, late ones would move bodies back in time
+                if(worldSnapshot.sequence <= this.lastSnapshotSequence){
+                    continue;
+                }
+                this.lastSnapshotSequence = worldSnapshot.sequence;
+                long time = System.currentTimeMillis();
+                int updateLength = (int) Math.min(time - this.lastSnapshotTime, MAX_SNAPSHOT_INTERVAL);
+                this.lastSnapshotTime = time;
+                boolean complete = true;
+                for(MoveGameObjectMessage moveGameObjectMessage : worldSnapshot.bodies){
+                    ClientGameObject gameObject = gameObjects.get(moveGameObjectMessage.id);
+                    if(gameObject != null){
+                        gameObject.move(moveGameObjectMessage, updateLength);
+                    } else {
+                        complete = false;
+                    }
+                }
+                //the add message of a body can still be on its way over the stream, the server resends it then
+                if(complete){
+                    connection.send(new WorldSnapshotAck(worldSnapshot.sequence));
                 }
             }
             if(message instanceof DeleteGameObject){
@@ -343,6 +378,12 @@ public class InGameScene implements IScene {
                 TerrainShapeMessage terrainShapeMessage = (TerrainShapeMessage) message;
                 this.terrainRenderer.loadMessage(terrainShapeMessage);
             }
+            if(message instanceof TerrainChunkUpdateMessage){
+                TerrainChunkUpdateMessage terrainChunkUpdateMessage = (TerrainChunkUpdateMessage) message;
+                if(!this.terrainRenderer.loadChunkUpdate(terrainChunkUpdateMessage)){
+                    connection.send(new RequestTerrainResync());
+                }
+            }
             if(message instanceof SetGameObjectEditUIData){
                 SetGameObjectEditUIData setGameObjectEditUIData = (SetGameObjectEditUIData) message;
                 ClientGameObjectEditor editor = this.editors.get(setGameObjectEditUIData.id);
@@ -354,9 +395,17 @@ public class InGameScene implements IScene {
                     editor.rebuild(setGameObjectEditUIData);
                 }
             }
-            if(message instanceof SendConnectionListData){
-                SendConnectionListData sendConnectionListData = (SendConnectionListData) message;
-                this.connectionsShowcase = sendConnectionListData.connections;
+            if(message instanceof ConnectionMarkers){
+                ConnectionMarkers connectionMarkers = (ConnectionMarkers) message;
+                if(connectionMarkers.fullResync){
+                    this.connectionMarkers.clear();
+                }
+                for(ConnectionMarkers.Marker marker : connectionMarkers.removed){
+                    this.connectionMarkers.remove(marker);
+                }
+                for(ConnectionMarkers.Marker marker : connectionMarkers.added){
+                    this.connectionMarkers.put(marker, marker);
+                }
             }
             if(message instanceof ResponseControllerState){
                 ResponseControllerState responseControllerState = (ResponseControllerState) message;
@@ -370,7 +419,6 @@ public class InGameScene implements IScene {
             connection.send(new ToggleGamePaused(true));
         }
         if(controllingData != null){
-            connection.send(new RequestControllerState(controllingData.controllingId));
             ClientGameObject gameObject = gameObjects.get(controllingData.controllingId);
             if(gameObject == null){
                 controllingData = null;
@@ -472,8 +520,12 @@ public class InGameScene implements IScene {
         batch.setColor(0.5f, 0.5f, 0.5f, 1);
         if(toolBox.tool == ToolBox.Tool.Hand && Gdx.input.isKeyPressed(Input.Keys.B)){
             batch.begin();
-            for(SendConnectionListData.Connection connection1 : connectionsShowcase){
-                batch.draw(jointBreakIcon, connection1.position.x * BOX_TO_PIXELS_RATIO - JOINT_BREAK_ICON_SIZE/2, connection1.position.y * BOX_TO_PIXELS_RATIO - JOINT_BREAK_ICON_SIZE/2, JOINT_BREAK_ICON_SIZE, JOINT_BREAK_ICON_SIZE);
+            for(ConnectionMarkers.Marker marker : connectionMarkers.values()){
+                Vector2 position = getMarkerPosition(marker);
+                if(position == null){
+                    continue;
+                }
+                batch.draw(jointBreakIcon, position.x * BOX_TO_PIXELS_RATIO - JOINT_BREAK_ICON_SIZE/2, position.y * BOX_TO_PIXELS_RATIO - JOINT_BREAK_ICON_SIZE/2, JOINT_BREAK_ICON_SIZE, JOINT_BREAK_ICON_SIZE);
             }
             batch.end();
         }
@@ -518,15 +570,46 @@ public class InGameScene implements IScene {
         }
         if(Gdx.input.isKeyJustPressed(Input.Keys.C)){
             if(controllingData != null){
+                connection.send(new ControllerStateSubscription(controllingData.controllingId, false));
                 controllingData = null;
             } else {
                 MouseSelector.Selection selection = mouseSelector.getSelected();
                 if (selection != null && gameObjects.get(selection.id).type.equals("controller")) {
                     controllingData = new ControllingData(selection.id);
+                    controllerState = new boolean[10];
+                    connection.send(new ControllerStateSubscription(selection.id, true));
                 }
             }
         }
         connection.send(new MouseMoved(mouseSelector.getWorldMousePosition()));
+        sendViewportIfChanged();
+        boolean connectionOverlayVisible = toolBox.tool == ToolBox.Tool.Hand && Gdx.input.isKeyPressed(Input.Keys.B);
+        if(connectionOverlayVisible != connectionOverlaySubscribed){
+            connectionOverlaySubscribed = connectionOverlayVisible;
+            connection.send(new ConnectionOverlaySubscription(connectionOverlayVisible));
+            if(!connectionOverlayVisible){
+                connectionMarkers.clear();
+            }
+        }
+        connection.flush();
+    }
+    private Vector2 getMarkerPosition(ConnectionMarkers.Marker marker){
+        ClientGameObject gameObject = gameObjects.get(marker.gameObjectId);
+        if(gameObject == null){
+            return null;
+        }
+        return marker.offset.cpy().rotateRad(gameObject.getRealAngle()).add(gameObject.getRealPosition());
+    }
+    private void sendViewportIfChanged(){
+        OrthographicCamera camera = cameraController.camera;
+        Vector2 center = new Vector2(camera.position.x / BOX_TO_PIXELS_RATIO, camera.position.y / BOX_TO_PIXELS_RATIO);
+        float width = camera.viewportWidth * camera.zoom / BOX_TO_PIXELS_RATIO;
+        float height = camera.viewportHeight * camera.zoom / BOX_TO_PIXELS_RATIO;
+        if(lastViewport != null && lastViewport.center.dst(center) < VIEWPORT_UPDATE_DISTANCE && Math.abs(lastViewport.width - width) < VIEWPORT_UPDATE_DISTANCE && Math.abs(lastViewport.height - height) < VIEWPORT_UPDATE_DISTANCE){
+            return;
+        }
+        lastViewport = new ViewportUpdate(center, width, height);
+        connection.send(lastViewport);
     }
     public void closeEditor(ClientGameObjectEditor editor){
         editors.entrySet().removeIf(entry -> entry.getValue() == editor);
@@ -551,7 +634,9 @@ public class InGameScene implements IScene {
                 client.disconnect();
             } catch(Exception e){}
         }
+        connection.close();
         batch.dispose();
+        terrainRenderer.dispose();
         toolBox.dispose();
         jointBreakIcon.dispose();
         editors.forEach((integer, editor) -> editor.dispose());
@@ -11,6 +11,7 @@ import com.badlogic.gdx.utils.JsonValue;
 import com.github.industrialcraft.netx.LanReceiver;
 import com.github.industrialcraft.netx.NetXClient;
 import com.github.industrialcraft.scrapbox.ClientNetXConnection;
+import com.github.industrialcraft.scrapbox.ClientNioConnection;
 import com.github.industrialcraft.scrapbox.common.net.MessageRegistryCreator;
 import com.github.industrialcraft.scrapbox.common.net.msg.EditorUIInput;
 
@@ -31,7 +32,8 @@ public class ServerJoinScene extends StageBasedScreen {
                 JsonValue json = new JsonReader().parse(lanMessage.getContent());
                 UUID uuid = UUID.fromString(json.getString("id"));
                 int port = json.getInt("port");
-                entries.put(uuid, new ServerEntry(lanMessage.getAddress().toString().replaceFirst("/", ""), port));
+                boolean nio = json.getString("transport", "netx").equals("nio");
+                entries.put(uuid, new ServerEntry(lanMessage.getAddress().toString().replaceFirst("/", ""), port, nio));
                 reload();
             });
             receiver.start();
@@ -44,13 +46,17 @@ public class ServerJoinScene extends StageBasedScreen {
         Skin skin = ScrapBox.getInstance().getSkin();
         table.clear();
         for(ServerEntry entry : entries.values()){
-            TextButton button = new TextButton(entry.address + ":" + entry.port, skin);
+            TextButton button = new TextButton(entry.address + ":" + entry.port + (entry.nio ? " (nio)" : ""), skin);
             button.addListener(new ClickListener(){
                 @Override
                 public void clicked(InputEvent event, float x, float y) {
+                    if(entry.nio){
+                        ScrapBox.getInstance().setScene(new ConnectingScene(new ClientNioConnection(entry.address, entry.port), null));
+                        return;
+                    }
                     NetXClient client = new NetXClient(entry.address, entry.port, MessageRegistryCreator.create());
                     client.start();
-                    ScrapBox.getInstance().setScene(new ConnectingScene(new ClientNetXConnection(client), client));
+                    ScrapBox.getInstance().setScene(new ConnectingScene(new ClientNetXConnection(client, entry.address), client));
                 }
             });
             table.add(button);
@@ -64,12 +70,17 @@ public class ServerJoinScene extends StageBasedScreen {
                 Dialog dialog = new Dialog("Enter Server IP and Port", skin, "dialog") {
                     public void result(Object obj) {
                         if(obj instanceof String){
+                            //ip:port, or ip:port:nio for servers running the nio transport
                             String[] split = input.getText().trim().split(":");
                             NetXClient client = null;
                             try {
+                                if(split.length > 2 && split[2].equals("nio")){
+                                    ScrapBox.getInstance().setScene(new ConnectingScene(new ClientNioConnection(split[0], Integer.parseInt(split[1])), null));
+                                    return;
+                                }
                                 client = new NetXClient(split[0], Integer.parseInt(split[1]), MessageRegistryCreator.create());
                                 client.start();
-                                ScrapBox.getInstance().setScene(new ConnectingScene(new ClientNetXConnection(client), client));
+                                ScrapBox.getInstance().setScene(new ConnectingScene(new ClientNetXConnection(client, split[0]), client));
                             } catch(Exception e){
                                 if(client != null)
                                     client.disconnect();
@@ -104,9 +115,11 @@ public class ServerJoinScene extends StageBasedScreen {
     public static class ServerEntry{
         public final String address;
         public final int port;
-        public ServerEntry(String address, int port) {
+        public final boolean nio;
+        public ServerEntry(String address, int port, boolean nio) {
             this.address = address;
             this.port = port;
+            this.nio = nio;
         }
     }
 }
@@ -1,33 +1,78 @@
 package com.github.industrialcraft.scrapbox.client;
 
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.PolygonRegion;
-import com.badlogic.gdx.graphics.g2d.PolygonSpriteBatch;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.EarClippingTriangulator;
-import com.badlogic.gdx.math.Polygon;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.ShortArray;
+import com.github.industrialcraft.scrapbox.common.net.msg.TerrainChunkUpdateMessage;
 import com.github.industrialcraft.scrapbox.common.net.msg.TerrainShapeMessage;
 import org.poly2tri.Poly2Tri;
 import org.poly2tri.geometry.polygon.PolygonPoint;
 import org.poly2tri.triangulation.TriangulationPoint;
 import org.poly2tri.triangulation.delaunay.DelaunayTriangle;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TerrainRenderer {
     public static final float TERRAIN_TEXTURE_SIZE = 16;
+    //indices are uploaded as unsigned shorts
+    public static final int MAX_MESH_VERTICES = 65536;
+    private static final String VERTEX_SHADER = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+            + "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+            + "uniform mat4 u_projTrans;\n"
+            + "varying vec2 v_texCoords;\n"
+            + "void main(){\n"
+            + "    v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+            + "    gl_Position = u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+            + "}\n";
+    private static final String FRAGMENT_SHADER = "#ifdef GL_ES\n"
+            + "precision mediump float;\n"
+            + "#endif\n"
+            + "varying vec2 v_texCoords;\n"
+            + "uniform sampler2D u_texture;\n"
+            + "void main(){\n"
+            + "    gl_FragColor = texture2D(u_texture, v_texCoords);\n"
+            + "}\n";
 
     public final HashMap<String, TextureRegion> textures;
-    private final PolygonSpriteBatch polygonSpriteBatch;
-    private final ArrayList<PolygonRegion> terrain;
+    private final ShaderProgram shader;
+    private final HashMap<Long,ArrayList<TerrainMesh>> terrain;
+    private int version;
+    private boolean awaitingResync;
+    private final ExecutorService triangulator;
+    private final ConcurrentLinkedQueue<TriangulatedTerrain> completedTerrain;
+    //only touched by the triangulator thread
+    private final HashMap<PolygonKey,TriangulatedPolygon> polygonCache;
+    private final HashMap<Long,ArrayList<PolygonKey>> chunkPolygons;
     public TerrainRenderer() {
         this.textures = new HashMap<>();
-        this.polygonSpriteBatch = new PolygonSpriteBatch();
-        this.terrain = new ArrayList<>();
+        this.shader = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        if(!this.shader.isCompiled()){
+            throw new IllegalStateException("terrain shader: " + this.shader.getLog());
+        }
+        this.terrain = new HashMap<>();
+        this.version = 0;
+        this.awaitingResync = false;
+        this.triangulator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "terrain triangulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.completedTerrain = new ConcurrentLinkedQueue<>();
+        this.polygonCache = new HashMap<>();
+        this.chunkPolygons = new HashMap<>();
     }
     public void addTerrainType(String type, String texture){
         Texture texture1 = new Texture(texture);
@@ -36,57 +81,376 @@ public class TerrainRenderer {
         this.textures.put(type, textureRegion);
     }
     public void loadMessage(TerrainShapeMessage message){
-        this.terrain.clear();
-        for(Map.Entry<String, ArrayList<TerrainShapeMessage.TerrainData>> entry : message.terrain.entrySet()) {
+        this.version = message.version;
+        this.awaitingResync = false;
+        triangulate(true, message.chunks);
+    }
+    /**
+     * @return false if the update does not directly follow the current version and a full resync is needed
+     */
+    public boolean loadChunkUpdate(TerrainChunkUpdateMessage message){
+        if(awaitingResync || message.version <= this.version){
+            return true;
+        }
+        if(message.version != this.version + 1){
+            awaitingResync = true;
+            return false;
+        }
+        this.version = message.version;
+        triangulate(false, message.chunks);
+        return true;
+    }
+    private void triangulate(boolean fullResync, ArrayList<TerrainShapeMessage.ChunkData> chunks){
+        this.triangulator.submit(() -> {
+            try {
+                HashMap<Long, ArrayList<MeshData>> triangulated = new HashMap<>();
+                if(fullResync){
+                    this.chunkPolygons.clear();
+                }
+                for(TerrainShapeMessage.ChunkData chunk : chunks){
+                    triangulated.put(chunk.getKey(), triangulateChunk(chunk));
+                }
+                HashSet<PolygonKey> used = new HashSet<>();
+                this.chunkPolygons.values().forEach(used::addAll);
+                this.polygonCache.keySet().retainAll(used);
+                this.completedTerrain.add(new TriangulatedTerrain(fullResync, triangulated));
+            } catch (Exception e){
+                e.printStackTrace();
+            }
+        });
+    }
+    private ArrayList<MeshData> triangulateChunk(TerrainShapeMessage.ChunkData chunk){
+        ArrayList<MeshData> meshes = new ArrayList<>();
+        ArrayList<PolygonKey> keys = new ArrayList<>();
+        for(Map.Entry<String, ArrayList<TerrainShapeMessage.TerrainData>> entry : chunk.terrain.entrySet()) {
+            MeshDataBuilder builder = new MeshDataBuilder(entry.getKey(), this.textures.get(entry.getKey()), meshes);
             for (TerrainShapeMessage.TerrainData data : entry.getValue()) {
-                try {
-                    org.poly2tri.geometry.polygon.Polygon polygon = new org.poly2tri.geometry.polygon.Polygon(data.terrain.points.stream().map(vector2 -> new PolygonPoint(vector2.x, vector2.y)).toArray(PolygonPoint[]::new));
-                    for (TerrainShapeMessage.TerrainPath hole : data.holes) {
-                        polygon.addHole(new org.poly2tri.geometry.polygon.Polygon(hole.points.stream().map(vector2 -> new PolygonPoint(vector2.x, vector2.y)).toArray(PolygonPoint[]::new)));
-                    }
-                    Poly2Tri.triangulate(polygon);
-                    List<DelaunayTriangle> triangles = polygon.getTriangles();
-                    short[] vertexIndexes = new short[triangles.size() * 3];
-                    VertexDeduplicator vertexDeduplicator = new VertexDeduplicator();
-                    for (int i = 0; i < triangles.size(); i++) {
-                        for (int j = 0; j < 3; j++) {
-                            TriangulationPoint point = triangles.get(i).points[j];
-                            vertexIndexes[i * 3 + j] = vertexDeduplicator.addVertex(new Vector2((float) (point.getX() * TERRAIN_TEXTURE_SIZE), (float) (point.getY() * TERRAIN_TEXTURE_SIZE)));
-                        }
-                    }
-                    this.terrain.add(new PolygonRegion(this.textures.get(entry.getKey()), vertexDeduplicator.listVertices(), vertexIndexes));
-                } catch(Exception e){
-                    System.out.println("terrain crash");
+                PolygonKey key = new PolygonKey(entry.getKey(), data);
+                TriangulatedPolygon polygon = this.polygonCache.get(key);
+                if(polygon == null){
+                    polygon = triangulatePolygon(data);
+                    this.polygonCache.put(key, polygon);
+                }
+                builder.addPolygon(polygon);
+                keys.add(key);
+            }
+            builder.flush();
+        }
+        if(keys.isEmpty()){
+            this.chunkPolygons.remove(chunk.getKey());
+        } else {
+            this.chunkPolygons.put(chunk.getKey(), keys);
+        }
+        return meshes;
+    }
+    private static TriangulatedPolygon triangulatePolygon(TerrainShapeMessage.TerrainData data){
+        VertexDeduplicator vertexDeduplicator = new VertexDeduplicator();
+        int[] vertexIndexes;
+        try {
+            org.poly2tri.geometry.polygon.Polygon polygon = new org.poly2tri.geometry.polygon.Polygon(data.terrain.points.stream().map(vector2 -> new PolygonPoint(vector2.x, vector2.y)).toArray(PolygonPoint[]::new));
+            for (TerrainShapeMessage.TerrainPath hole : data.holes) {
+                polygon.addHole(new org.poly2tri.geometry.polygon.Polygon(hole.points.stream().map(vector2 -> new PolygonPoint(vector2.x, vector2.y)).toArray(PolygonPoint[]::new)));
+            }
+            Poly2Tri.triangulate(polygon);
+            List<DelaunayTriangle> triangles = polygon.getTriangles();
+            vertexIndexes = new int[triangles.size() * 3];
+            for (int i = 0; i < triangles.size(); i++) {
+                for (int j = 0; j < 3; j++) {
+                    TriangulationPoint point = triangles.get(i).points[j];
+                    vertexIndexes[i * 3 + j] = vertexDeduplicator.addVertex(new Vector2(point.getXf(), point.getYf()));
+                }
+            }
+        } catch(Exception e){
+            vertexDeduplicator = new VertexDeduplicator();
+            ArrayList<Vector2> points = bridgeHoles(data);
+            float[] vertices = new float[points.size() * 2];
+            for(int i = 0;i < points.size();i++){
+                vertices[i * 2] = points.get(i).x;
+                vertices[i * 2 + 1] = points.get(i).y;
+            }
+            ShortArray triangles = new EarClippingTriangulator().computeTriangles(vertices);
+            vertexIndexes = new int[triangles.size];
+            for(int i = 0;i < triangles.size;i++){
+                //ear clipping indices go past Short.MAX_VALUE on huge outlines
+                vertexIndexes[i] = vertexDeduplicator.addVertex(points.get(triangles.get(i) & 0xFFFF));
+            }
+        }
+        return new TriangulatedPolygon(vertexDeduplicator.listVertices(), vertexIndexes);
+    }
+    /**
+     * Joins every hole to the outline through a zero width cut, so the polygon can be ear clipped as one loop.
+     * The cut goes to the nearest outline vertex and is not checked against other edges, it is only used as a
+     * fallback when Poly2Tri rejects the polygon.
+     */
+    private static ArrayList<Vector2> bridgeHoles(TerrainShapeMessage.TerrainData data){
+        ArrayList<Vector2> outline = new ArrayList<>(data.terrain.points);
+        boolean outlineClockwise = signedArea(outline) < 0;
+        for(TerrainShapeMessage.TerrainPath holePath : data.holes){
+            if(holePath.points.size() < 3){
+                continue;
+            }
+            ArrayList<Vector2> hole = new ArrayList<>(holePath.points);
+            if((signedArea(hole) < 0) == outlineClockwise){
+                Collections.reverse(hole);
+            }
+            int holeIndex = 0;
+            for(int i = 1;i < hole.size();i++){
+                if(hole.get(i).x > hole.get(holeIndex).x){
+                    holeIndex = i;
                 }
             }
+            Vector2 holePoint = hole.get(holeIndex);
+            int outlineIndex = 0;
+            for(int i = 1;i < outline.size();i++){
+                if(outline.get(i).dst2(holePoint) < outline.get(outlineIndex).dst2(holePoint)){
+                    outlineIndex = i;
+                }
+            }
+            ArrayList<Vector2> bridge = new ArrayList<>(hole.size() + 2);
+            for(int i = 0;i <= hole.size();i++){
+                bridge.add(hole.get((holeIndex + i) % hole.size()));
+            }
+            bridge.add(outline.get(outlineIndex));
+            outline.addAll(outlineIndex + 1, bridge);
+        }
+        return outline;
+    }
+    private static float signedArea(ArrayList<Vector2> points){
+        float area = 0;
+        for(int i = 0;i < points.size();i++){
+            Vector2 a = points.get(i);
+            Vector2 b = points.get((i + 1) % points.size());
+            area += a.x * b.y - b.x * a.y;
+        }
+        return area / 2;
+    }
+    private void applyTriangulatedTerrain(){
+        TriangulatedTerrain triangulated = this.completedTerrain.poll();
+        while(triangulated != null){
+            if(triangulated.fullResync){
+                this.terrain.values().forEach(TerrainRenderer::disposeMeshes);
+                this.terrain.clear();
+            }
+            triangulated.chunks.forEach((key, meshData) -> {
+                ArrayList<TerrainMesh> meshes = new ArrayList<>(meshData.size());
+                for(MeshData data : meshData){
+                    meshes.add(new TerrainMesh(data));
+                }
+                ArrayList<TerrainMesh> previous = meshes.isEmpty() ? this.terrain.remove(key) : this.terrain.put(key, meshes);
+                if(previous != null){
+                    disposeMeshes(previous);
+                }
+            });
+            triangulated = this.completedTerrain.poll();
+        }
+    }
+    private static void disposeMeshes(ArrayList<TerrainMesh> meshes){
+        for(TerrainMesh mesh : meshes){
+            mesh.mesh.dispose();
         }
     }
     public void draw(CameraController cameraController){
-        this.polygonSpriteBatch.setProjectionMatrix(cameraController.camera.combined.cpy().scl(InGameScene.BOX_TO_PIXELS_RATIO / TERRAIN_TEXTURE_SIZE));
-        this.polygonSpriteBatch.begin();
-        for(PolygonRegion polygonRegion : this.terrain){
-            try {
-                this.polygonSpriteBatch.draw(polygonRegion, 0, 0);
-            } catch(Exception e){
-                e.printStackTrace();
+        applyTriangulatedTerrain();
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for(Vector3 point : cameraController.camera.frustum.planePoints){
+            minX = Math.min(minX, point.x / InGameScene.BOX_TO_PIXELS_RATIO);
+            minY = Math.min(minY, point.y / InGameScene.BOX_TO_PIXELS_RATIO);
+            maxX = Math.max(maxX, point.x / InGameScene.BOX_TO_PIXELS_RATIO);
+            maxY = Math.max(maxY, point.y / InGameScene.BOX_TO_PIXELS_RATIO);
+        }
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        this.shader.bind();
+        this.shader.setUniformMatrix("u_projTrans", cameraController.camera.combined.cpy().scl(InGameScene.BOX_TO_PIXELS_RATIO));
+        this.shader.setUniformi("u_texture", 0);
+        Texture boundTexture = null;
+        for(ArrayList<TerrainMesh> chunk : this.terrain.values()){
+            for(TerrainMesh mesh : chunk){
+                if(mesh.maxX < minX || mesh.minX > maxX || mesh.maxY < minY || mesh.minY > maxY){
+                    continue;
+                }
+                if(mesh.texture != boundTexture){
+                    mesh.texture.bind(0);
+                    boundTexture = mesh.texture;
+                }
+                mesh.mesh.render(this.shader, GL20.GL_TRIANGLES);
             }
         }
-        this.polygonSpriteBatch.end();
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+    public void dispose(){
+        this.triangulator.shutdownNow();
+        this.terrain.values().forEach(TerrainRenderer::disposeMeshes);
+        this.terrain.clear();
+        this.shader.dispose();
     }
 
+    private static class TriangulatedTerrain{
+        public final boolean fullResync;
+        public final HashMap<Long,ArrayList<MeshData>> chunks;
+        private TriangulatedTerrain(boolean fullResync, HashMap<Long, ArrayList<MeshData>> chunks) {
+            this.fullResync = fullResync;
+            this.chunks = chunks;
+        }
+    }
+    private static class TriangulatedPolygon{
+        public final float[] vertices;
+        public final int[] triangles;
+        private TriangulatedPolygon(float[] vertices, int[] triangles) {
+            this.vertices = vertices;
+            this.triangles = triangles;
+        }
+    }
+    private static class MeshData{
+        public final Texture texture;
+        public final float[] vertices;
+        public final short[] indices;
+        public final float minX, minY, maxX, maxY;
+        private MeshData(Texture texture, float[] vertices, short[] indices, float minX, float minY, float maxX, float maxY) {
+            this.texture = texture;
+            this.vertices = vertices;
+            this.indices = indices;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+    }
+    /**
+     * Packs the polygons of one terrain type into as few meshes as possible, starting a new mesh whenever the next
+     * triangle would push it past {@link #MAX_MESH_VERTICES}.
+     */
+    private static class MeshDataBuilder{
+        private final TextureRegion texture;
+        private final ArrayList<MeshData> output;
+        private final FloatArray vertices;
+        private final ShortArray indices;
+        private float minX, minY, maxX, maxY;
+        private MeshDataBuilder(String type, TextureRegion texture, ArrayList<MeshData> output) {
+            if(texture == null){
+                throw new IllegalArgumentException("unknown terrain type " + type);
+            }
+            this.texture = texture;
+            this.output = output;
+            this.vertices = new FloatArray();
+            this.indices = new ShortArray();
+            reset();
+        }
+        private void reset(){
+            this.vertices.clear();
+            this.indices.clear();
+            this.minX = Float.POSITIVE_INFINITY;
+            this.minY = Float.POSITIVE_INFINITY;
+            this.maxX = Float.NEGATIVE_INFINITY;
+            this.maxY = Float.NEGATIVE_INFINITY;
+        }
+        public void addPolygon(TriangulatedPolygon polygon){
+            int[] localIndices = new int[polygon.vertices.length / 2];
+            Arrays.fill(localIndices, -1);
+            for(int i = 0;i < polygon.triangles.length;i += 3){
+                if(getVertexCount() + 3 > MAX_MESH_VERTICES){
+                    flush();
+                    Arrays.fill(localIndices, -1);
+                }
+                for(int j = 0;j < 3;j++){
+                    int index = polygon.triangles[i + j];
+                    if(localIndices[index] == -1){
+                        localIndices[index] = getVertexCount();
+                        addVertex(polygon.vertices[index * 2], polygon.vertices[index * 2 + 1]);
+                    }
+                    this.indices.add((short) localIndices[index]);
+                }
+            }
+        }
+        private int getVertexCount(){
+            return this.vertices.size / 4;
+        }
+        private void addVertex(float x, float y){
+            float u = texture.getU() + (texture.getU2() - texture.getU()) * (x * TERRAIN_TEXTURE_SIZE / texture.getRegionWidth());
+            float v = texture.getV() + (texture.getV2() - texture.getV()) * (1 - y * TERRAIN_TEXTURE_SIZE / texture.getRegionHeight());
+            this.vertices.add(x, y, u, v);
+            this.minX = Math.min(this.minX, x);
+            this.minY = Math.min(this.minY, y);
+            this.maxX = Math.max(this.maxX, x);
+            this.maxY = Math.max(this.maxY, y);
+        }
+        public void flush(){
+            if(this.indices.size > 0){
+                this.output.add(new MeshData(texture.getTexture(), this.vertices.toArray(), this.indices.toArray(), minX, minY, maxX, maxY));
+            }
+            reset();
+        }
+    }
+    private static class TerrainMesh{
+        public final Texture texture;
+        public final Mesh mesh;
+        public final float minX, minY, maxX, maxY;
+        private TerrainMesh(MeshData data) {
+            this.texture = data.texture;
+            this.mesh = new Mesh(true, data.vertices.length / 4, data.indices.length, new VertexAttribute(VertexAttributes.Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE), VertexAttribute.TexCoords(0));
+            this.mesh.setVertices(data.vertices);
+            this.mesh.setIndices(data.indices);
+            this.minX = data.minX;
+            this.minY = data.minY;
+            this.maxX = data.maxX;
+            this.maxY = data.maxY;
+        }
+    }
+    private static class PolygonKey{
+        public final String type;
+        public final float[] points;
+        private final int hash;
+        private PolygonKey(String type, TerrainShapeMessage.TerrainData data) {
+            this.type = type;
+            int size = data.terrain.points.size();
+            for(TerrainShapeMessage.TerrainPath hole : data.holes){
+                size += hole.points.size() + 1;
+            }
+            this.points = new float[size * 2];
+            int i = addPoints(data.terrain, 0);
+            for(TerrainShapeMessage.TerrainPath hole : data.holes){
+                //separates holes so different splits of the same points do not compare equal
+                this.points[i++] = Float.NaN;
+                this.points[i++] = hole.points.size();
+                i = addPoints(hole, i);
+            }
+            this.hash = 31 * type.hashCode() + Arrays.hashCode(points);
+        }
+        private int addPoints(TerrainShapeMessage.TerrainPath path, int i){
+            for(Vector2 point : path.points){
+                this.points[i++] = point.x;
+                this.points[i++] = point.y;
+            }
+            return i;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PolygonKey that = (PolygonKey) o;
+            return hash == that.hash && type.equals(that.type) && Arrays.equals(points, that.points);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
     public static class VertexDeduplicator{
         private final ArrayList<Vector2> vertices;
-        private final HashMap<Vector2,Short> duplicates;
+        private final HashMap<Vector2,Integer> duplicates;
         public VertexDeduplicator(){
             this.vertices = new ArrayList<>();
             this.duplicates = new HashMap<>();
         }
-        public short addVertex(Vector2 position){
-            Short duplicate = this.duplicates.get(position);
+        public int addVertex(Vector2 position){
+            Integer duplicate = this.duplicates.get(position);
             if(duplicate != null){
                 return duplicate;
             }
-            short index = (short) vertices.size();
+            int index = vertices.size();
             vertices.add(position);
             this.duplicates.put(position, index);
             return index;
@@ -4,5 +4,33 @@ import java.util.ArrayList;
 
 public interface IConnection {
     void send(Object message);
+    default void send(SerializedMessage message){
+        send(message.message);
+    }
+    /**
+     * @return messages received since the last call, may be reused by the next call
+     */
     ArrayList<Object> read();
+    /**
+     * For messages that may get lost or arrive out of order, like snapshots. Goes over the reliable stream when
+     * the connection has no datagram channel.
+     */
+    default void sendUnreliable(Object message){
+        send(message);
+    }
+    /**
+     * Called once per tick after everything for this tick was sent, connections that gather messages send them
+     * here.
+     */
+    default void flush(){}
+    /**
+     * @return number of sent messages the other end has not taken yet, 0 if the connection cannot tell
+     */
+    default int getQueueDepth(){
+        return 0;
+    }
+    /**
+     * Releases what the connection holds, like sockets and threads.
+     */
+    default void close(){}
 }
@@ -1,27 +1,70 @@
 package com.github.industrialcraft.scrapbox.common.net;
 
 import java.util.ArrayList;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * One end of an in process connection, made of a ring buffer in each direction. Each end must only be used from one
+ * thread.
+ * <p>
+ * Nothing is allocated per message and memory stays bounded. When the ring is full, unreliable messages like
+ * snapshots are dropped, as they would be over a datagram channel. A reliable message that does not fit closes the
+ * connection for both ends, like a remote client that stopped reading would be disconnected. The server keeps the
+ * ring well below that by holding back bulk traffic once {@link #getQueueDepth()} grows.
+ */
 public class LocalConnection implements IConnection {
-    public final ConcurrentLinkedQueue<Object> write;
-    public final ConcurrentLinkedQueue<Object> read;
-    public LocalConnection(ConcurrentLinkedQueue<Object> serverSide, ConcurrentLinkedQueue<Object> clientSide) {
-        write = serverSide;
-        read = clientSide;
+    public static final int CAPACITY = 16 * 1024;
+
+    public final SpscRingBuffer<Object> write;
+    public final SpscRingBuffer<Object> read;
+    private final AtomicBoolean closed;
+    private final ArrayList<Object> readList;
+    private LocalConnection(SpscRingBuffer<Object> write, SpscRingBuffer<Object> read, AtomicBoolean closed) {
+        this.write = write;
+        this.read = read;
+        this.closed = closed;
+        this.readList = new ArrayList<>();
+    }
+    /**
+     * @return both ends of a new connection
+     */
+    public static LocalConnection[] createPair(){
+        SpscRingBuffer<Object> first = new SpscRingBuffer<>(CAPACITY);
+        SpscRingBuffer<Object> second = new SpscRingBuffer<>(CAPACITY);
+        AtomicBoolean closed = new AtomicBoolean(false);
+        return new LocalConnection[]{new LocalConnection(first, second, closed), new LocalConnection(second, first, closed)};
     }
     @Override
     public void send(Object message) {
-        this.write.add(message);
+        if(this.closed.get()){
+            return;
+        }
+        if(!this.write.offer(message)){
+            System.out.println("local connection full, closing it");
+            close();
+        }
     }
     @Override
-    public ArrayList<Object> read() {
-        ArrayList<Object> messages = new ArrayList<>();
-        Object message = this.read.poll();
-        while(message != null){
-            messages.add(message);
-            message = this.read.poll();
+    public void sendUnreliable(Object message) {
+        if(!this.closed.get()){
+            this.write.offer(message);
         }
-        return messages;
+    }
+    @Override
+    public int getQueueDepth() {
+        return this.write.size();
+    }
+    @Override
+    public ArrayList<Object> read() {
+        this.readList.clear();
+        this.read.drainTo(this.readList);
+        return this.readList;
+    }
+    public boolean isClosed(){
+        return this.closed.get();
+    }
+    @Override
+    public void close() {
+        this.closed.set(true);
     }
 }
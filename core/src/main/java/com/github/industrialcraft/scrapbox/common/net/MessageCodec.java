@@ -0,0 +1,68 @@
+package com.github.industrialcraft.scrapbox.common.net;
+
+import com.github.industrialcraft.netx.MessageRegistry;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ids and codecs of all messages. The NetX registry is created from it, and batches use it to encode the messages
+ * they carry without going through NetX.
+ */
+public class MessageCodec {
+    private final HashMap<Integer, Descriptor<?>> descriptors;
+    private final HashMap<Class<?>, Integer> ids;
+    public MessageCodec() {
+        this.descriptors = new HashMap<>();
+        this.ids = new HashMap<>();
+    }
+    public void register(int id, Descriptor<?> descriptor){
+        if(this.descriptors.containsKey(id)){
+            throw new IllegalArgumentException("message id " + id + " registered twice");
+        }
+        this.descriptors.put(id, descriptor);
+        this.ids.put(descriptor.type, id);
+    }
+    public MessageRegistry createRegistry(){
+        MessageRegistry messageRegistry = new MessageRegistry();
+        for(Map.Entry<Integer, Descriptor<?>> entry : this.descriptors.entrySet()){
+            messageRegistry.register(entry.getKey(), entry.getValue().toNetX());
+        }
+        return messageRegistry;
+    }
+    public void write(DataOutputStream stream, Object message) throws IOException {
+        Integer id = this.ids.get(message.getClass());
+        if(id == null){
+            throw new IllegalArgumentException("message " + message.getClass().getName() + " is not registered");
+        }
+        WireFormat.writeVarInt(stream, id);
+        this.descriptors.get(id).writeObject(message, stream);
+    }
+    public Object read(DataInputStream stream) throws IOException {
+        int id = WireFormat.readVarInt(stream);
+        Descriptor<?> descriptor = this.descriptors.get(id);
+        if(descriptor == null){
+            throw new IOException("unknown message id " + id);
+        }
+        return descriptor.reader.read(stream);
+    }
+    public static class Descriptor<T>{
+        public final Class<T> type;
+        public final MessageRegistry.IMessageReader<T> reader;
+        public final MessageRegistry.IMessageWriter<T> writer;
+        public Descriptor(Class<T> type, MessageRegistry.IMessageReader<T> reader, MessageRegistry.IMessageWriter<T> writer) {
+            this.type = type;
+            this.reader = reader;
+            this.writer = writer;
+        }
+        private void writeObject(Object message, DataOutputStream stream) throws IOException {
+            this.writer.write(this.type.cast(message), stream);
+        }
+        public MessageRegistry.MessageDescriptor<T> toNetX(){
+            return new MessageRegistry.MessageDescriptor<>(this.type, this.reader, this.writer);
+        }
+    }
+}
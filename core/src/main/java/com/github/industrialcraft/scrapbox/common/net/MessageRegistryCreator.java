@@ -5,35 +5,48 @@ import com.github.industrialcraft.scrapbox.common.net.msg.*;
 
 public class MessageRegistryCreator {
     public static MessageRegistry create(){
-        MessageRegistry messageRegistry = new MessageRegistry();
-        messageRegistry.register(1, AddGameObjectMessage.createDescriptor());
-        messageRegistry.register(2, CommitWeld.createDescriptor());
-        messageRegistry.register(3, DeleteGameObject.createDescriptor());
-        messageRegistry.register(4, GameObjectPinch.createDescriptor());
-        messageRegistry.register(5, GameObjectRelease.createDescriptor());
-        messageRegistry.register(6, LockGameObject.createDescriptor());
-        messageRegistry.register(7, MouseMoved.createDescriptor());
-        messageRegistry.register(8, MoveGameObjectMessage.createDescriptor());
-        messageRegistry.register(9, PinchingRotate.createDescriptor());
-        messageRegistry.register(10, PinchingGhostToggle.createDescriptor());
-        messageRegistry.register(11, PlaceTerrain.createDescriptor());
-        messageRegistry.register(12, ShowActivePossibleWelds.createDescriptor());
-        messageRegistry.register(13, TakeObject.createDescriptor());
-        messageRegistry.register(14, TakeObjectResponse.createDescriptor());
-        messageRegistry.register(15, TerrainShapeMessage.createDescriptor());
-        messageRegistry.register(16, ToggleGamePaused.createDescriptor());
-        messageRegistry.register(17, TrashObject.createDescriptor());
-        messageRegistry.register(18, OpenGameObjectEditUI.createDescriptor());
-        messageRegistry.register(19, SetGameObjectEditUIData.createDescriptor());
-        messageRegistry.register(20, CreateValueConnection.createDescriptor());
-        messageRegistry.register(21, ControllerInput.createDescriptor());
-        messageRegistry.register(22, EditorUIInput.createDescriptor());
-        messageRegistry.register(23, SendConnectionListData.createDescriptor());
-        messageRegistry.register(24, DestroyJoint.createDescriptor());
-        messageRegistry.register(25, RequestControllerState.createDescriptor());
-        messageRegistry.register(26, ResponseControllerState.createDescriptor());
-        messageRegistry.register(27, DestroyValueConnection.createDescriptor());
-        messageRegistry.register(28, CloseGameObjectEditUI.createDescriptor());
-        return messageRegistry;
+        return createCodec().createRegistry();
+    }
+    public static MessageCodec createCodec(){
+        MessageCodec messageCodec = new MessageCodec();
+        messageCodec.register(1, AddGameObjectMessage.createDescriptor());
+        messageCodec.register(2, CommitWeld.createDescriptor());
+        messageCodec.register(3, DeleteGameObject.createDescriptor());
+        messageCodec.register(4, GameObjectPinch.createDescriptor());
+        messageCodec.register(5, GameObjectRelease.createDescriptor());
+        messageCodec.register(6, LockGameObject.createDescriptor());
+        messageCodec.register(7, MouseMoved.createDescriptor());
+        messageCodec.register(8, MoveGameObjectMessage.createDescriptor());
+        messageCodec.register(9, PinchingRotate.createDescriptor());
+        messageCodec.register(10, PinchingGhostToggle.createDescriptor());
+        messageCodec.register(11, PlaceTerrain.createDescriptor());
+        messageCodec.register(12, ShowActivePossibleWelds.createDescriptor());
+        messageCodec.register(13, TakeObject.createDescriptor());
+        messageCodec.register(14, TakeObjectResponse.createDescriptor());
+        messageCodec.register(15, TerrainShapeMessage.createDescriptor());
+        messageCodec.register(16, ToggleGamePaused.createDescriptor());
+        messageCodec.register(17, TrashObject.createDescriptor());
+        messageCodec.register(18, OpenGameObjectEditUI.createDescriptor());
+        messageCodec.register(19, SetGameObjectEditUIData.createDescriptor());
+        messageCodec.register(20, CreateValueConnection.createDescriptor());
+        messageCodec.register(21, ControllerInput.createDescriptor());
+        messageCodec.register(22, EditorUIInput.createDescriptor());
+        messageCodec.register(24, DestroyJoint.createDescriptor());
+        messageCodec.register(25, ControllerStateSubscription.createDescriptor());
+        messageCodec.register(26, ResponseControllerState.createDescriptor());
+        messageCodec.register(27, DestroyValueConnection.createDescriptor());
+        messageCodec.register(28, CloseGameObjectEditUI.createDescriptor());
+        messageCodec.register(29, TerrainChunkUpdateMessage.createDescriptor());
+        messageCodec.register(30, RequestTerrainResync.createDescriptor());
+        messageCodec.register(31, WorldSnapshot.createDescriptor());
+        messageCodec.register(32, WorldSnapshotAck.createDescriptor());
+        messageCodec.register(33, ViewportUpdate.createDescriptor());
+        messageCodec.register(34, AddGameObjectMessage.createCompactDescriptor());
+        messageCodec.register(35, WorldSnapshot.createCompactDescriptor());
+        messageCodec.register(37, MessageBatch.createDescriptor(messageCodec));
+        messageCodec.register(38, ConnectionMarkers.createDescriptor());
+        messageCodec.register(39, ConnectionOverlaySubscription.createDescriptor());
+        messageCodec.register(40, UdpChannelInfo.createDescriptor());
+        return messageCodec;
     }
 }
@@ -0,0 +1,35 @@
+package com.github.industrialcraft.scrapbox.common.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Message going to several connections. It is encoded the first time a connection needs its bytes, and every other
+ * connection reuses them. Connections without a codec, like {@link LocalConnection}, just take {@link #message}.
+ */
+public class SerializedMessage {
+    public final Object message;
+    private final MessageCodec codec;
+    private byte[] data;
+    public SerializedMessage(MessageCodec codec, Object message) {
+        this.codec = codec;
+        this.message = message;
+        this.data = null;
+    }
+    /**
+     * @return codec id and payload of the message, must not be modified
+     */
+    public byte[] getData(){
+        if(this.data == null){
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            try {
+                this.codec.write(new DataOutputStream(stream), this.message);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            this.data = stream.toByteArray();
+        }
+        return this.data;
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.industrialcraft.scrapbox.common.net;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue for exactly one producing and one consuming thread, which may be the same one. Neither end locks or
+ * allocates, and {@link #drainTo(Collection)} takes everything available with a single publish of the new head.
+ * <p>
+ * {@link #offer(Object)} refuses elements once the buffer is full, what happens to them is up to the owner.
+ */
+public class SpscRingBuffer<T> {
+    private final Object[] buffer;
+    private final int mask;
+    //next index to read, only advanced by the consumer
+    private final AtomicLong head;
+    //next index to write, only advanced by the producer
+    private final AtomicLong tail;
+    //producer's last look at head, so it only reads the shared counter when the buffer seems full
+    private long cachedHead;
+    //consumer's last look at tail
+    private long cachedTail;
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public SpscRingBuffer(int capacity) {
+        if(capacity <= 0 || capacity > (1 << 30)){
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity){
+            size <<= 1;
+        }
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.cachedHead = 0;
+        this.cachedTail = 0;
+    }
+    public int capacity(){
+        return this.buffer.length;
+    }
+    /**
+     * Producer only.
+     * @return false if the buffer is full
+     */
+    public boolean offer(T element){
+        long tail = this.tail.get();
+        if(tail - this.cachedHead >= this.buffer.length){
+            this.cachedHead = this.head.get();
+            if(tail - this.cachedHead >= this.buffer.length){
+                return false;
+            }
+        }
+        this.buffer[(int) tail & this.mask] = element;
+        //ordered store, the element is visible before the new tail
+        this.tail.lazySet(tail + 1);
+        return true;
+    }
+    /**
+     * Consumer only.
+     * @return oldest element, null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll(){
+        long head = this.head.get();
+        if(head >= this.cachedTail){
+            this.cachedTail = this.tail.get();
+            if(head >= this.cachedTail){
+                return null;
+            }
+        }
+        int index = (int) head & this.mask;
+        T element = (T) this.buffer[index];
+        this.buffer[index] = null;
+        this.head.lazySet(head + 1);
+        return element;
+    }
+    /**
+     * Consumer only. Moves everything available into the collection, oldest first.
+     * @return number of moved elements
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super T> target){
+        long head = this.head.get();
+        long tail = this.tail.get();
+        this.cachedTail = tail;
+        for(long i = head;i < tail;i++){
+            int index = (int) i & this.mask;
+            target.add((T) this.buffer[index]);
+            this.buffer[index] = null;
+        }
+        this.head.lazySet(tail);
+        return (int) (tail - head);
+    }
+    /**
+     * @return number of queued elements, only a snapshot when called while the other end is active
+     */
+    public int size(){
+        long head = this.head.get();
+        return (int) (this.tail.get() - head);
+    }
+    public boolean isEmpty(){
+        return size() == 0;
+    }
+}
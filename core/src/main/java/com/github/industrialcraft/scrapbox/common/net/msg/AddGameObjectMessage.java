@@ -1,7 +1,8 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.WireFormat;
 import com.github.industrialcraft.scrapbox.server.ClientWorldManager;
 
 import java.io.DataInputStream;
@@ -28,7 +29,7 @@ public class AddGameObjectMessage {
         this.type = stream.readUTF();
         this.position = new Vector2(stream.readFloat(), stream.readFloat());
         this.rotation = stream.readFloat();
-        this.animation = new ClientWorldManager.AnimationData(stream);
+        this.animation = ClientWorldManager.AnimationData.fromStream(stream, ClientWorldManager.AnimationSchema.fromStream(stream));
         this.selectable = stream.readBoolean();
     }
     public void toStream(DataOutputStream stream) throws IOException {
@@ -37,10 +38,37 @@ public class AddGameObjectMessage {
         stream.writeFloat(position.x);
         stream.writeFloat(position.y);
         stream.writeFloat(rotation);
+        animation.schema.toStream(stream);
         animation.toStream(stream);
         stream.writeBoolean(selectable);
     }
-    public static MessageRegistry.MessageDescriptor<AddGameObjectMessage> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(AddGameObjectMessage.class, AddGameObjectMessage::new, AddGameObjectMessage::toStream);
+    public static MessageCodec.Descriptor<AddGameObjectMessage> createDescriptor(){
+        return new MessageCodec.Descriptor<>(AddGameObjectMessage.class, AddGameObjectMessage::new, AddGameObjectMessage::toStream);
+    }
+    public static MessageCodec.Descriptor<Compact> createCompactDescriptor(){
+        return new MessageCodec.Descriptor<>(Compact.class, Compact::read, Compact::toStream);
+    }
+    public static class Compact extends AddGameObjectMessage{
+        public Compact(int id, String type, Vector2 position, float rotation, ClientWorldManager.AnimationData animation, boolean selectable) {
+            super(id, type, position, rotation, animation, selectable);
+        }
+        public static Compact read(DataInputStream stream) throws IOException {
+            int id = WireFormat.readVarInt(stream);
+            String type = WireFormat.readString(stream);
+            Vector2 position = WireFormat.readPosition(stream);
+            float rotation = WireFormat.readAngle(stream);
+            ClientWorldManager.AnimationData animation = ClientWorldManager.AnimationData.fromCompactStream(stream, ClientWorldManager.AnimationSchema.fromCompactStream(stream));
+            return new Compact(id, type, position, rotation, animation, stream.readBoolean());
+        }
+        @Override
+        public void toStream(DataOutputStream stream) throws IOException {
+            WireFormat.writeVarInt(stream, id);
+            WireFormat.writeString(stream, type);
+            WireFormat.writePosition(stream, position);
+            WireFormat.writeAngle(stream, rotation);
+            animation.schema.toCompactStream(stream);
+            animation.toCompactStream(stream);
+            stream.writeBoolean(selectable);
+        }
     }
 }
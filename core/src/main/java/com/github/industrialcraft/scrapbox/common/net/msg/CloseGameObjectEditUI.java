@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -17,7 +17,7 @@ public class CloseGameObjectEditUI {
     public void toStream(DataOutputStream stream) throws IOException {
         stream.writeInt(id);
     }
-    public static MessageRegistry.MessageDescriptor<CloseGameObjectEditUI> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(CloseGameObjectEditUI.class, CloseGameObjectEditUI::new, CloseGameObjectEditUI::toStream);
+    public static MessageCodec.Descriptor<CloseGameObjectEditUI> createDescriptor(){
+        return new MessageCodec.Descriptor<>(CloseGameObjectEditUI.class, CloseGameObjectEditUI::new, CloseGameObjectEditUI::toStream);
     }
 }
@@ -1,7 +1,7 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -15,7 +15,7 @@ public class CommitWeld {
     public void toStream(DataOutputStream stream) throws IOException {
 
     }
-    public static MessageRegistry.MessageDescriptor<CommitWeld> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(CommitWeld.class, CommitWeld::new, CommitWeld::toStream);
+    public static MessageCodec.Descriptor<CommitWeld> createDescriptor(){
+        return new MessageCodec.Descriptor<>(CommitWeld.class, CommitWeld::new, CommitWeld::toStream);
     }
 }
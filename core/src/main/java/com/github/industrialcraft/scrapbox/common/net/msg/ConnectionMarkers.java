@@ -0,0 +1,86 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.badlogic.gdx.math.Vector2;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.WireFormat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * Changes to the connection markers shown by the joint breaking overlay. Markers are positioned relative to the
+ * base body of their game object, the client places them using its interpolated transform.
+ */
+public class ConnectionMarkers {
+    //the client drops all markers it knows before applying this update
+    public final boolean fullResync;
+    public final ArrayList<Marker> added;
+    public final ArrayList<Marker> removed;
+    public ConnectionMarkers(boolean fullResync, ArrayList<Marker> added, ArrayList<Marker> removed) {
+        this.fullResync = fullResync;
+        this.added = added;
+        this.removed = removed;
+    }
+    public ConnectionMarkers(DataInputStream stream) throws IOException {
+        this.fullResync = stream.readBoolean();
+        int count = WireFormat.readVarInt(stream);
+        this.added = new ArrayList<>(count);
+        for(int i = 0;i < count;i++){
+            int gameObjectId = WireFormat.readVarInt(stream);
+            String name = WireFormat.readString(stream);
+            float x = WireFormat.readHalf(stream);
+            this.added.add(new Marker(gameObjectId, name, new Vector2(x, WireFormat.readHalf(stream))));
+        }
+        count = WireFormat.readVarInt(stream);
+        this.removed = new ArrayList<>(count);
+        for(int i = 0;i < count;i++){
+            int gameObjectId = WireFormat.readVarInt(stream);
+            this.removed.add(new Marker(gameObjectId, WireFormat.readString(stream), Vector2.Zero));
+        }
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+        stream.writeBoolean(fullResync);
+        WireFormat.writeVarInt(stream, added.size());
+        for(Marker marker : added){
+            WireFormat.writeVarInt(stream, marker.gameObjectId);
+            WireFormat.writeString(stream, marker.name);
+            WireFormat.writeHalf(stream, marker.offset.x);
+            WireFormat.writeHalf(stream, marker.offset.y);
+        }
+        WireFormat.writeVarInt(stream, removed.size());
+        for(Marker marker : removed){
+            WireFormat.writeVarInt(stream, marker.gameObjectId);
+            WireFormat.writeString(stream, marker.name);
+        }
+    }
+    public static MessageCodec.Descriptor<ConnectionMarkers> createDescriptor(){
+        return new MessageCodec.Descriptor<>(ConnectionMarkers.class, ConnectionMarkers::new, ConnectionMarkers::toStream);
+    }
+    /**
+     * Identified by the game object and connection name, the offset is not part of equality.
+     */
+    public static class Marker{
+        public final int gameObjectId;
+        public final String name;
+        public final Vector2 offset;
+        public Marker(int gameObjectId, String name, Vector2 offset) {
+            this.gameObjectId = gameObjectId;
+            this.name = name;
+            this.offset = offset;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Marker marker = (Marker) o;
+            return gameObjectId == marker.gameObjectId && name.equals(marker.name);
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hash(gameObjectId, name);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class ConnectionOverlaySubscription {
+    public final boolean subscribed;
+    public ConnectionOverlaySubscription(boolean subscribed) {
+        this.subscribed = subscribed;
+    }
+    public ConnectionOverlaySubscription(DataInputStream stream) throws IOException {
+        this.subscribed = stream.readBoolean();
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+        stream.writeBoolean(subscribed);
+    }
+    public static MessageCodec.Descriptor<ConnectionOverlaySubscription> createDescriptor(){
+        return new MessageCodec.Descriptor<>(ConnectionOverlaySubscription.class, ConnectionOverlaySubscription::new, ConnectionOverlaySubscription::toStream);
+    }
+}
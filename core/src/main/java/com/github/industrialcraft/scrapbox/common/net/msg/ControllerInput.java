@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -25,7 +25,7 @@ public class ControllerInput {
         stream.writeInt(key);
         stream.writeBoolean(down);
     }
-    public static MessageRegistry.MessageDescriptor<ControllerInput> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(ControllerInput.class, ControllerInput::new, ControllerInput::toStream);
+    public static MessageCodec.Descriptor<ControllerInput> createDescriptor(){
+        return new MessageCodec.Descriptor<>(ControllerInput.class, ControllerInput::new, ControllerInput::toStream);
     }
 }
@@ -0,0 +1,31 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * While subscribed, the server sends a {@link ResponseControllerState} right away and again whenever the buttons of
+ * the controller change.
+ */
+public class ControllerStateSubscription {
+    public final int gameObjectId;
+    public final boolean subscribed;
+    public ControllerStateSubscription(int gameObjectId, boolean subscribed){
+        this.gameObjectId = gameObjectId;
+        this.subscribed = subscribed;
+    }
+    public ControllerStateSubscription(DataInputStream stream) throws IOException {
+        this.gameObjectId = stream.readInt();
+        this.subscribed = stream.readBoolean();
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+        stream.writeInt(gameObjectId);
+        stream.writeBoolean(subscribed);
+    }
+    public static MessageCodec.Descriptor<ControllerStateSubscription> createDescriptor(){
+        return new MessageCodec.Descriptor<>(ControllerStateSubscription.class, ControllerStateSubscription::new, ControllerStateSubscription::toStream);
+    }
+}
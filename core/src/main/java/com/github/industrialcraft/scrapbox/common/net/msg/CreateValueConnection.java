@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -29,7 +29,7 @@ public class CreateValueConnection {
         stream.writeInt(outputObjectId);
         stream.writeInt(outputId);
     }
-    public static MessageRegistry.MessageDescriptor<CreateValueConnection> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(CreateValueConnection.class, CreateValueConnection::new, CreateValueConnection::toStream);
+    public static MessageCodec.Descriptor<CreateValueConnection> createDescriptor(){
+        return new MessageCodec.Descriptor<>(CreateValueConnection.class, CreateValueConnection::new, CreateValueConnection::toStream);
     }
 }
@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -17,7 +17,7 @@ public class DeleteGameObject {
     public void toStream(DataOutputStream stream) throws IOException {
         stream.writeInt(id);
     }
-    public static MessageRegistry.MessageDescriptor<DeleteGameObject> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(DeleteGameObject.class, DeleteGameObject::new, DeleteGameObject::toStream);
+    public static MessageCodec.Descriptor<DeleteGameObject> createDescriptor(){
+        return new MessageCodec.Descriptor<>(DeleteGameObject.class, DeleteGameObject::new, DeleteGameObject::toStream);
     }
 }
@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -21,7 +21,7 @@ public class DestroyJoint {
         stream.writeInt(gameObjectId);
         stream.writeUTF(name);
     }
-    public static MessageRegistry.MessageDescriptor<DestroyJoint> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(DestroyJoint.class, DestroyJoint::new, DestroyJoint::toStream);
+    public static MessageCodec.Descriptor<DestroyJoint> createDescriptor(){
+        return new MessageCodec.Descriptor<>(DestroyJoint.class, DestroyJoint::new, DestroyJoint::toStream);
     }
 }
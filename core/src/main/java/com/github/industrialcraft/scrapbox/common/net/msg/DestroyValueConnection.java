@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -21,7 +21,7 @@ public class DestroyValueConnection {
         stream.writeInt(inputObjectId);
         stream.writeInt(inputId);
     }
-    public static MessageRegistry.MessageDescriptor<DestroyValueConnection> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(DestroyValueConnection.class, DestroyValueConnection::new, DestroyValueConnection::toStream);
+    public static MessageCodec.Descriptor<DestroyValueConnection> createDescriptor(){
+        return new MessageCodec.Descriptor<>(DestroyValueConnection.class, DestroyValueConnection::new, DestroyValueConnection::toStream);
     }
 }
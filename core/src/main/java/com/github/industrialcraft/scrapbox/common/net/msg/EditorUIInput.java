@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -25,7 +25,7 @@ public class EditorUIInput {
         stream.writeUTF(elementId);
         stream.writeUTF(value);
     }
-    public static MessageRegistry.MessageDescriptor<EditorUIInput> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(EditorUIInput.class, EditorUIInput::new, EditorUIInput::toStream);
+    public static MessageCodec.Descriptor<EditorUIInput> createDescriptor(){
+        return new MessageCodec.Descriptor<>(EditorUIInput.class, EditorUIInput::new, EditorUIInput::toStream);
     }
 }
@@ -1,7 +1,7 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -23,7 +23,7 @@ public class GameObjectPinch {
         stream.writeFloat(offset.x);
         stream.writeFloat(offset.y);
     }
-    public static MessageRegistry.MessageDescriptor<GameObjectPinch> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(GameObjectPinch.class, GameObjectPinch::new, GameObjectPinch::toStream);
+    public static MessageCodec.Descriptor<GameObjectPinch> createDescriptor(){
+        return new MessageCodec.Descriptor<>(GameObjectPinch.class, GameObjectPinch::new, GameObjectPinch::toStream);
     }
 }
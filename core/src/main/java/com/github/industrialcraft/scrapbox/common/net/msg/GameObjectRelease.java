@@ -1,7 +1,7 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -15,7 +15,7 @@ public class GameObjectRelease {
     public void toStream(DataOutputStream stream) throws IOException {
 
     }
-    public static MessageRegistry.MessageDescriptor<GameObjectRelease> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(GameObjectRelease.class, GameObjectRelease::new, GameObjectRelease::toStream);
+    public static MessageCodec.Descriptor<GameObjectRelease> createDescriptor(){
+        return new MessageCodec.Descriptor<>(GameObjectRelease.class, GameObjectRelease::new, GameObjectRelease::toStream);
     }
 }
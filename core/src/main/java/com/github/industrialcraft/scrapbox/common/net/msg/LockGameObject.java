@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -14,7 +14,7 @@ public class LockGameObject {
     public void toStream(DataOutputStream stream) throws IOException {
 
     }
-    public static MessageRegistry.MessageDescriptor<LockGameObject> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(LockGameObject.class, LockGameObject::new, LockGameObject::toStream);
+    public static MessageCodec.Descriptor<LockGameObject> createDescriptor(){
+        return new MessageCodec.Descriptor<>(LockGameObject.class, LockGameObject::new, LockGameObject::toStream);
     }
 }
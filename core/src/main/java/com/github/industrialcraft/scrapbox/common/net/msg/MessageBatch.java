@@ -0,0 +1,55 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.WireFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Several messages sent as one frame. The sender encodes them with {@link MessageCodec} while gathering, the
+ * receiver gets them decoded in {@link #messages}.
+ */
+public class MessageBatch {
+    public final ArrayList<Object> messages;
+    private final int count;
+    private final byte[] data;
+    private final int length;
+    public MessageBatch(int count, byte[] data, int length) {
+        this.messages = null;
+        this.count = count;
+        this.data = data;
+        this.length = length;
+    }
+    private MessageBatch(ArrayList<Object> messages) {
+        this.messages = messages;
+        this.count = messages.size();
+        this.data = null;
+        this.length = 0;
+    }
+    public static MessageBatch read(DataInputStream stream, MessageCodec codec) throws IOException {
+        int count = WireFormat.readVarInt(stream);
+        byte[] data = new byte[WireFormat.readVarInt(stream)];
+        stream.readFully(data);
+        DataInputStream batchStream = new DataInputStream(new ByteArrayInputStream(data));
+        ArrayList<Object> messages = new ArrayList<>(count);
+        for(int i = 0;i < count;i++){
+            messages.add(codec.read(batchStream));
+        }
+        return new MessageBatch(messages);
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+        if(data == null){
+            throw new IllegalStateException("received batches cannot be sent again");
+        }
+        WireFormat.writeVarInt(stream, count);
+        WireFormat.writeVarInt(stream, length);
+        stream.write(data, 0, length);
+    }
+    public static MessageCodec.Descriptor<MessageBatch> createDescriptor(MessageCodec codec){
+        return new MessageCodec.Descriptor<>(MessageBatch.class, stream -> read(stream, codec), MessageBatch::toStream);
+    }
+}
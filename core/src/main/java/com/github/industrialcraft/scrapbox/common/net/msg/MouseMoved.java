@@ -1,7 +1,7 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -19,7 +19,7 @@ public class MouseMoved {
         stream.writeFloat(position.x);
         stream.writeFloat(position.y);
     }
-    public static MessageRegistry.MessageDescriptor<MouseMoved> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(MouseMoved.class, MouseMoved::new, MouseMoved::toStream);
+    public static MessageCodec.Descriptor<MouseMoved> createDescriptor(){
+        return new MessageCodec.Descriptor<>(MouseMoved.class, MouseMoved::new, MouseMoved::toStream);
     }
 }
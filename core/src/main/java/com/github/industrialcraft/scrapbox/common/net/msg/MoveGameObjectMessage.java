@@ -1,8 +1,9 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
 import com.github.industrialcraft.scrapbox.common.EObjectInteractionMode;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.WireFormat;
 import com.github.industrialcraft.scrapbox.server.ClientWorldManager;
 
 import java.io.DataInputStream;
@@ -14,6 +15,7 @@ public class MoveGameObjectMessage {
     public final Vector2 position;
     public final float rotation;
     public final EObjectInteractionMode mode;
+    //only the slots that changed since the last acknowledged snapshot, see ClientWorldManager.AnimationData
     public final ClientWorldManager.AnimationData animation;
     public final boolean selected;
     public MoveGameObjectMessage(int id, Vector2 position, float rotation, EObjectInteractionMode mode, ClientWorldManager.AnimationData animation, boolean selected) {
@@ -29,7 +31,7 @@ public class MoveGameObjectMessage {
         this.position = new Vector2(stream.readFloat(), stream.readFloat());
         this.rotation = stream.readFloat();
         this.mode = EObjectInteractionMode.fromId(stream.readByte());
-        this.animation = new ClientWorldManager.AnimationData(stream);
+        this.animation = ClientWorldManager.AnimationData.fromStream(stream, null);
         this.selected = stream.readBoolean();
     }
     public void toStream(DataOutputStream stream) throws IOException {
@@ -37,10 +39,32 @@ public class MoveGameObjectMessage {
         stream.writeFloat(position.x);
         stream.writeFloat(position.y);
         stream.writeFloat(rotation);
+        stream.writeByte(mode.id);
         animation.toStream(stream);
         stream.writeBoolean(selected);
     }
-    public static MessageRegistry.MessageDescriptor<MoveGameObjectMessage> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(MoveGameObjectMessage.class, MoveGameObjectMessage::new, MoveGameObjectMessage::toStream);
+    public static MoveGameObjectMessage fromCompactStream(DataInputStream stream) throws IOException {
+        int id = WireFormat.readVarInt(stream);
+        Vector2 position = WireFormat.readPosition(stream);
+        float rotation = WireFormat.readAngle(stream);
+        byte flags = stream.readByte();
+        ClientWorldManager.AnimationData animation = ClientWorldManager.AnimationData.fromCompactStream(stream, null);
+        return new MoveGameObjectMessage(id, position, rotation, EObjectInteractionMode.fromId((byte) (flags & 0x7F)), animation, (flags & 0x80) != 0);
+    }
+    public void toCompactStream(DataOutputStream stream) throws IOException {
+        writeCompactTransform(stream, id, position, rotation);
+        toCompactStateStream(stream);
+    }
+    public static void writeCompactTransform(DataOutputStream stream, int id, Vector2 position, float rotation) throws IOException {
+        WireFormat.writeVarInt(stream, id);
+        WireFormat.writePosition(stream, position);
+        WireFormat.writeAngle(stream, rotation);
+    }
+    public void toCompactStateStream(DataOutputStream stream) throws IOException {
+        stream.writeByte(mode.id | (selected ? 0x80 : 0));
+        animation.toCompactStream(stream);
+    }
+    public static MessageCodec.Descriptor<MoveGameObjectMessage> createDescriptor(){
+        return new MessageCodec.Descriptor<>(MoveGameObjectMessage.class, MoveGameObjectMessage::new, MoveGameObjectMessage::toStream);
     }
 }
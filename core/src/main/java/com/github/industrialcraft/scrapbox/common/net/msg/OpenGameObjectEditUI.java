@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -17,7 +17,7 @@ public class OpenGameObjectEditUI {
     public void toStream(DataOutputStream stream) throws IOException {
         stream.writeInt(id);
     }
-    public static MessageRegistry.MessageDescriptor<OpenGameObjectEditUI> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(OpenGameObjectEditUI.class, OpenGameObjectEditUI::new, OpenGameObjectEditUI::toStream);
+    public static MessageCodec.Descriptor<OpenGameObjectEditUI> createDescriptor(){
+        return new MessageCodec.Descriptor<>(OpenGameObjectEditUI.class, OpenGameObjectEditUI::new, OpenGameObjectEditUI::toStream);
     }
 }
@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -16,7 +16,7 @@ public class PinchingGhostToggle {
     public void toStream(DataOutputStream stream) throws IOException {
 
     }
-    public static MessageRegistry.MessageDescriptor<PinchingGhostToggle> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(PinchingGhostToggle.class, PinchingGhostToggle::new, PinchingGhostToggle::toStream);
+    public static MessageCodec.Descriptor<PinchingGhostToggle> createDescriptor(){
+        return new MessageCodec.Descriptor<>(PinchingGhostToggle.class, PinchingGhostToggle::new, PinchingGhostToggle::toStream);
     }
 }
@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -17,7 +17,7 @@ public class PinchingRotate {
     public void toStream(DataOutputStream stream) throws IOException {
         stream.writeFloat(rotation);
     }
-    public static MessageRegistry.MessageDescriptor<PinchingRotate> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(PinchingRotate.class, PinchingRotate::new, PinchingRotate::toStream);
+    public static MessageCodec.Descriptor<PinchingRotate> createDescriptor(){
+        return new MessageCodec.Descriptor<>(PinchingRotate.class, PinchingRotate::new, PinchingRotate::toStream);
     }
 }
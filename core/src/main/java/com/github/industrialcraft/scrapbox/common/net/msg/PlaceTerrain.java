@@ -1,7 +1,7 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -31,7 +31,7 @@ public class PlaceTerrain {
         stream.writeFloat(radius);
         stream.writeBoolean(rectangle);
     }
-    public static MessageRegistry.MessageDescriptor<PlaceTerrain> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(PlaceTerrain.class, PlaceTerrain::new, PlaceTerrain::toStream);
+    public static MessageCodec.Descriptor<PlaceTerrain> createDescriptor(){
+        return new MessageCodec.Descriptor<>(PlaceTerrain.class, PlaceTerrain::new, PlaceTerrain::toStream);
     }
 }
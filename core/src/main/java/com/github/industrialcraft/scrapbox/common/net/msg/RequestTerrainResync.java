@@ -0,0 +1,20 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class RequestTerrainResync {
+    public RequestTerrainResync(){}
+    public RequestTerrainResync(DataInputStream stream) throws IOException {
+
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+
+    }
+    public static MessageCodec.Descriptor<RequestTerrainResync> createDescriptor(){
+        return new MessageCodec.Descriptor<>(RequestTerrainResync.class, RequestTerrainResync::new, RequestTerrainResync::toStream);
+    }
+}
@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -22,7 +22,7 @@ public class ResponseControllerState {
             stream.writeBoolean(state[i]);
         }
     }
-    public static MessageRegistry.MessageDescriptor<ResponseControllerState> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(ResponseControllerState.class, ResponseControllerState::new, ResponseControllerState::toStream);
+    public static MessageCodec.Descriptor<ResponseControllerState> createDescriptor(){
+        return new MessageCodec.Descriptor<>(ResponseControllerState.class, ResponseControllerState::new, ResponseControllerState::toStream);
     }
 }
@@ -1,8 +1,8 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
 import com.github.industrialcraft.scrapbox.common.editui.EditorUIElement;
 import com.github.industrialcraft.scrapbox.common.editui.EditorUIRow;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -40,7 +40,7 @@ public class SetGameObjectEditUIData {
             }
         }
     }
-    public static MessageRegistry.MessageDescriptor<SetGameObjectEditUIData> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(SetGameObjectEditUIData.class, SetGameObjectEditUIData::new, SetGameObjectEditUIData::toStream);
+    public static MessageCodec.Descriptor<SetGameObjectEditUIData> createDescriptor(){
+        return new MessageCodec.Descriptor<>(SetGameObjectEditUIData.class, SetGameObjectEditUIData::new, SetGameObjectEditUIData::toStream);
     }
 }
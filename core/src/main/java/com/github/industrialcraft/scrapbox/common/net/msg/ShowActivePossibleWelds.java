@@ -1,7 +1,7 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -37,7 +37,7 @@ public class ShowActivePossibleWelds {
             stream.writeFloat(weld.second.y);
         }
     }
-    public static MessageRegistry.MessageDescriptor<ShowActivePossibleWelds> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(ShowActivePossibleWelds.class, ShowActivePossibleWelds::new, ShowActivePossibleWelds::toStream);
+    public static MessageCodec.Descriptor<ShowActivePossibleWelds> createDescriptor(){
+        return new MessageCodec.Descriptor<>(ShowActivePossibleWelds.class, ShowActivePossibleWelds::new, ShowActivePossibleWelds::toStream);
     }
 }
@@ -1,7 +1,7 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -29,7 +29,7 @@ public class TakeObject {
         stream.writeFloat(offset.x);
         stream.writeFloat(offset.y);
     }
-    public static MessageRegistry.MessageDescriptor<TakeObject> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(TakeObject.class, TakeObject::new, TakeObject::toStream);
+    public static MessageCodec.Descriptor<TakeObject> createDescriptor(){
+        return new MessageCodec.Descriptor<>(TakeObject.class, TakeObject::new, TakeObject::toStream);
     }
 }
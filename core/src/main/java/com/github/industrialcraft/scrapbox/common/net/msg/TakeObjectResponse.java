@@ -1,7 +1,7 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -23,7 +23,7 @@ public class TakeObjectResponse {
         stream.writeFloat(offset.x);
         stream.writeFloat(offset.y);
     }
-    public static MessageRegistry.MessageDescriptor<TakeObjectResponse> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(TakeObjectResponse.class, TakeObjectResponse::new, TakeObjectResponse::toStream);
+    public static MessageCodec.Descriptor<TakeObjectResponse> createDescriptor(){
+        return new MessageCodec.Descriptor<>(TakeObjectResponse.class, TakeObjectResponse::new, TakeObjectResponse::toStream);
     }
 }
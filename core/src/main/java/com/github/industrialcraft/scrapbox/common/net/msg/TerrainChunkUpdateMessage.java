@@ -0,0 +1,35 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+public class TerrainChunkUpdateMessage {
+    public final int version;
+    public final ArrayList<TerrainShapeMessage.ChunkData> chunks;
+    public TerrainChunkUpdateMessage(int version, ArrayList<TerrainShapeMessage.ChunkData> chunks) {
+        this.version = version;
+        this.chunks = chunks;
+    }
+    public TerrainChunkUpdateMessage(DataInputStream stream) throws IOException {
+        this.version = stream.readInt();
+        int count = stream.readInt();
+        this.chunks = new ArrayList<>(count);
+        for(int i = 0;i < count;i++){
+            this.chunks.add(new TerrainShapeMessage.ChunkData(stream));
+        }
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+        stream.writeInt(version);
+        stream.writeInt(chunks.size());
+        for(TerrainShapeMessage.ChunkData chunk : chunks){
+            chunk.toStream(stream);
+        }
+    }
+    public static MessageCodec.Descriptor<TerrainChunkUpdateMessage> createDescriptor(){
+        return new MessageCodec.Descriptor<>(TerrainChunkUpdateMessage.class, TerrainChunkUpdateMessage::new, TerrainChunkUpdateMessage::toStream);
+    }
+}
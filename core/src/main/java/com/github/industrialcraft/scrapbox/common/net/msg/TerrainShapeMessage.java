@@ -1,7 +1,7 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
 import com.badlogic.gdx.math.Vector2;
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -11,34 +11,71 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class TerrainShapeMessage {
-    public final HashMap<String,ArrayList<TerrainData>> terrain;
-    public TerrainShapeMessage(HashMap<String,ArrayList<TerrainData>> terrain) {
-        this.terrain = terrain;
+    public final int version;
+    public final ArrayList<ChunkData> chunks;
+    public TerrainShapeMessage(int version, ArrayList<ChunkData> chunks) {
+        this.version = version;
+        this.chunks = chunks;
     }
     public TerrainShapeMessage(DataInputStream stream) throws IOException {
+        this.version = stream.readInt();
         int count = stream.readInt();
-        this.terrain = new HashMap<>();
+        this.chunks = new ArrayList<>(count);
         for(int i = 0;i < count;i++){
-            String name = stream.readUTF();
-            int count2 = stream.readInt();
-            ArrayList<TerrainData> terrainData = new ArrayList<>();
-            for(int j = 0;j < count2;j++)
-                terrainData.add(new TerrainData(stream));
-            this.terrain.put(name,terrainData);
+            this.chunks.add(new ChunkData(stream));
         }
     }
     public void toStream(DataOutputStream stream) throws IOException {
-        stream.writeInt(terrain.size());
-        for(Map.Entry<String, ArrayList<TerrainData>> path : terrain.entrySet()){
-            stream.writeUTF(path.getKey());
-            stream.writeInt(path.getValue().size());
-            for (TerrainData terrainData : path.getValue()) {
-                terrainData.toStream(stream);
-            }
+        stream.writeInt(version);
+        stream.writeInt(chunks.size());
+        for(ChunkData chunk : chunks){
+            chunk.toStream(stream);
         }
     }
-    public static MessageRegistry.MessageDescriptor<TerrainShapeMessage> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(TerrainShapeMessage.class, TerrainShapeMessage::new, TerrainShapeMessage::toStream);
+    public static MessageCodec.Descriptor<TerrainShapeMessage> createDescriptor(){
+        return new MessageCodec.Descriptor<>(TerrainShapeMessage.class, TerrainShapeMessage::new, TerrainShapeMessage::toStream);
+    }
+    public static class ChunkData{
+        public final int x;
+        public final int y;
+        public final HashMap<String,ArrayList<TerrainData>> terrain;
+        public ChunkData(int x, int y, HashMap<String,ArrayList<TerrainData>> terrain) {
+            this.x = x;
+            this.y = y;
+            this.terrain = terrain;
+        }
+        public ChunkData(DataInputStream stream) throws IOException {
+            this.x = stream.readInt();
+            this.y = stream.readInt();
+            int count = stream.readInt();
+            this.terrain = new HashMap<>();
+            for(int i = 0;i < count;i++){
+                String name = stream.readUTF();
+                int count2 = stream.readInt();
+                ArrayList<TerrainData> terrainData = new ArrayList<>();
+                for(int j = 0;j < count2;j++)
+                    terrainData.add(new TerrainData(stream));
+                this.terrain.put(name,terrainData);
+            }
+        }
+        public void toStream(DataOutputStream stream) throws IOException {
+            stream.writeInt(x);
+            stream.writeInt(y);
+            stream.writeInt(terrain.size());
+            for(Map.Entry<String, ArrayList<TerrainData>> path : terrain.entrySet()){
+                stream.writeUTF(path.getKey());
+                stream.writeInt(path.getValue().size());
+                for (TerrainData terrainData : path.getValue()) {
+                    terrainData.toStream(stream);
+                }
+            }
+        }
+        public long getKey(){
+            return createKey(x, y);
+        }
+        public static long createKey(int x, int y){
+            return (((long) x) << 32) | (y & 0xFFFFFFFFL);
+        }
     }
     public static class TerrainData{
         public final TerrainPath terrain;
@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -17,7 +17,7 @@ public class ToggleGamePaused {
     public void toStream(DataOutputStream stream) throws IOException {
         stream.writeBoolean(step);
     }
-    public static MessageRegistry.MessageDescriptor<ToggleGamePaused> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(ToggleGamePaused.class, ToggleGamePaused::new, ToggleGamePaused::toStream);
+    public static MessageCodec.Descriptor<ToggleGamePaused> createDescriptor(){
+        return new MessageCodec.Descriptor<>(ToggleGamePaused.class, ToggleGamePaused::new, ToggleGamePaused::toStream);
     }
 }
@@ -1,6 +1,6 @@
 package com.github.industrialcraft.scrapbox.common.net.msg;
 
-import com.github.industrialcraft.netx.MessageRegistry;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -17,7 +17,7 @@ public class TrashObject {
     public void toStream(DataOutputStream stream) throws IOException {
         stream.writeInt(id);
     }
-    public static MessageRegistry.MessageDescriptor<TrashObject> createDescriptor(){
-        return new MessageRegistry.MessageDescriptor<>(TrashObject.class, TrashObject::new, TrashObject::toStream);
+    public static MessageCodec.Descriptor<TrashObject> createDescriptor(){
+        return new MessageCodec.Descriptor<>(TrashObject.class, TrashObject::new, TrashObject::toStream);
     }
 }
@@ -0,0 +1,30 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Port of the server's datagram side channel and the token the client identifies itself with there.
+ */
+public class UdpChannelInfo {
+    public final int port;
+    public final long token;
+    public UdpChannelInfo(int port, long token) {
+        this.port = port;
+        this.token = token;
+    }
+    public UdpChannelInfo(DataInputStream stream) throws IOException {
+        this.port = stream.readUnsignedShort();
+        this.token = stream.readLong();
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+        stream.writeShort(port);
+        stream.writeLong(token);
+    }
+    public static MessageCodec.Descriptor<UdpChannelInfo> createDescriptor(){
+        return new MessageCodec.Descriptor<>(UdpChannelInfo.class, UdpChannelInfo::new, UdpChannelInfo::toStream);
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.badlogic.gdx.math.Vector2;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class ViewportUpdate {
+    public final Vector2 center;
+    public final float width;
+    public final float height;
+    public ViewportUpdate(Vector2 center, float width, float height) {
+        this.center = center;
+        this.width = width;
+        this.height = height;
+    }
+    public ViewportUpdate(DataInputStream stream) throws IOException {
+        this.center = new Vector2(stream.readFloat(), stream.readFloat());
+        this.width = stream.readFloat();
+        this.height = stream.readFloat();
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+        stream.writeFloat(center.x);
+        stream.writeFloat(center.y);
+        stream.writeFloat(width);
+        stream.writeFloat(height);
+    }
+    public static MessageCodec.Descriptor<ViewportUpdate> createDescriptor(){
+        return new MessageCodec.Descriptor<>(ViewportUpdate.class, ViewportUpdate::new, ViewportUpdate::toStream);
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.badlogic.gdx.math.Vector2;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.WireFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class WorldSnapshot {
+    public final int sequence;
+    public final ArrayList<MoveGameObjectMessage> bodies;
+    public WorldSnapshot(int sequence, ArrayList<MoveGameObjectMessage> bodies) {
+        this.sequence = sequence;
+        this.bodies = bodies;
+    }
+    public WorldSnapshot(DataInputStream stream) throws IOException {
+        this.sequence = stream.readInt();
+        int count = stream.readInt();
+        this.bodies = new ArrayList<>(count);
+        for(int i = 0;i < count;i++){
+            this.bodies.add(new MoveGameObjectMessage(stream));
+        }
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+        stream.writeInt(sequence);
+        stream.writeInt(bodies.size());
+        for(MoveGameObjectMessage body : bodies){
+            body.toStream(stream);
+        }
+    }
+    public static MessageCodec.Descriptor<WorldSnapshot> createDescriptor(){
+        return new MessageCodec.Descriptor<>(WorldSnapshot.class, WorldSnapshot::new, WorldSnapshot::toStream);
+    }
+    public static MessageCodec.Descriptor<Compact> createCompactDescriptor(){
+        return new MessageCodec.Descriptor<>(Compact.class, Compact::read, Compact::toStream);
+    }
+    public static class Compact extends WorldSnapshot{
+        private final EncodedTransforms transforms;
+        private final int[] transformIndices;
+        public Compact(int sequence, ArrayList<MoveGameObjectMessage> bodies) {
+            this(sequence, bodies, null, null);
+        }
+        /**
+         * @param transformIndices index into transforms of each body, their id, position and rotation are copied
+         *                         from there instead of being encoded again
+         */
+        public Compact(int sequence, ArrayList<MoveGameObjectMessage> bodies, EncodedTransforms transforms, int[] transformIndices) {
+            super(sequence, bodies);
+            this.transforms = transforms;
+            this.transformIndices = transformIndices;
+        }
+        public static Compact read(DataInputStream stream) throws IOException {
+            int sequence = WireFormat.readVarInt(stream);
+            int count = WireFormat.readVarInt(stream);
+            ArrayList<MoveGameObjectMessage> bodies = new ArrayList<>(count);
+            for(int i = 0;i < count;i++){
+                bodies.add(MoveGameObjectMessage.fromCompactStream(stream));
+            }
+            return new Compact(sequence, bodies);
+        }
+        @Override
+        public void toStream(DataOutputStream stream) throws IOException {
+            WireFormat.writeVarInt(stream, sequence);
+            WireFormat.writeVarInt(stream, bodies.size());
+            for(int i = 0;i < bodies.size();i++){
+                if(transforms == null){
+                    bodies.get(i).toCompactStream(stream);
+                } else {
+                    transforms.write(stream, transformIndices[i]);
+                    bodies.get(i).toCompactStateStream(stream);
+                }
+            }
+        }
+    }
+    /**
+     * Reusable buffer the compact transforms of all bodies get encoded into once per tick, {@link #finish()} hands
+     * out an immutable copy the snapshots of all players share.
+     */
+    public static class TransformBuffer{
+        private final ByteArrayOutputStream buffer;
+        private final DataOutputStream stream;
+        private int[] offsets;
+        private int count;
+        public TransformBuffer() {
+            this.buffer = new ByteArrayOutputStream();
+            this.stream = new DataOutputStream(buffer);
+            this.offsets = new int[16];
+            this.count = 0;
+        }
+        public void reset(){
+            this.buffer.reset();
+            this.count = 0;
+        }
+        public int add(int id, Vector2 position, float rotation){
+            if(this.count + 1 >= this.offsets.length){
+                this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+            }
+            try {
+                MoveGameObjectMessage.writeCompactTransform(this.stream, id, position, rotation);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            this.offsets[++this.count] = this.buffer.size();
+            return this.count - 1;
+        }
+        public EncodedTransforms finish(){
+            return new EncodedTransforms(this.buffer.toByteArray(), Arrays.copyOf(this.offsets, this.count + 1));
+        }
+    }
+    public static class EncodedTransforms{
+        private final byte[] data;
+        private final int[] offsets;
+        private EncodedTransforms(byte[] data, int[] offsets) {
+            this.data = data;
+            this.offsets = offsets;
+        }
+        public void write(DataOutputStream stream, int index) throws IOException {
+            stream.write(data, offsets[index], offsets[index + 1] - offsets[index]);
+        }
+    }
+}
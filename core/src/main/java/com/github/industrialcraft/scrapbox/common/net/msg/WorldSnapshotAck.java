@@ -0,0 +1,23 @@
+package com.github.industrialcraft.scrapbox.common.net.msg;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class WorldSnapshotAck {
+    public final int sequence;
+    public WorldSnapshotAck(int sequence) {
+        this.sequence = sequence;
+    }
+    public WorldSnapshotAck(DataInputStream stream) throws IOException {
+        this.sequence = stream.readInt();
+    }
+    public void toStream(DataOutputStream stream) throws IOException {
+        stream.writeInt(sequence);
+    }
+    public static MessageCodec.Descriptor<WorldSnapshotAck> createDescriptor(){
+        return new MessageCodec.Descriptor<>(WorldSnapshotAck.class, WorldSnapshotAck::new, WorldSnapshotAck::toStream);
+    }
+}
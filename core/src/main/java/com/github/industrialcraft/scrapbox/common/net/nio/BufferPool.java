@@ -0,0 +1,40 @@
+package com.github.industrialcraft.scrapbox.common.net.nio;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Direct buffers of one size, handed back after use so steady traffic does not allocate. At most
+ * {@link #maxPooled} free buffers are kept, the rest are left to the garbage collector.
+ */
+public class BufferPool {
+    public final int bufferSize;
+    public final int maxPooled;
+    private final ArrayDeque<ByteBuffer> free;
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.free = new ArrayDeque<>();
+    }
+    /**
+     * @return cleared buffer in write mode
+     */
+    public ByteBuffer acquire(){
+        ByteBuffer buffer;
+        synchronized (this.free){
+            buffer = this.free.poll();
+        }
+        if(buffer == null){
+            return ByteBuffer.allocateDirect(this.bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+    public void release(ByteBuffer buffer){
+        synchronized (this.free){
+            if(this.free.size() < this.maxPooled){
+                this.free.push(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.github.industrialcraft.scrapbox.common.net.nio;
+
+import com.github.industrialcraft.scrapbox.common.net.IConnection;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.SerializedMessage;
+import com.github.industrialcraft.scrapbox.common.net.SpscRingBuffer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Connection of a {@link NioTransport}. Every message is a frame of its length as an int followed by the message
+ * encoded by the message codec, so ids and payloads are the same as over NetX.
+ * <p>
+ * Sent frames are encoded straight into pooled direct buffers, which are queued in {@link #flush()} and written with
+ * one gathering write. Only when the socket does not take everything does the selector thread finish the write.
+ * Received frames are decoded on the selector thread from a pooled buffer owned by the connection into a ring buffer.
+ * When the ring is full the connection stops reading until {@link #read()} made space, and TCP flow control slows
+ * the peer down.
+ */
+public class NioConnection implements IConnection {
+    //a frame this big is a corrupt stream rather than a message
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    public static final int RECEIVE_CAPACITY = 4096;
+    private static final int MAX_GATHER = 16;
+
+    private final NioTransport transport;
+    public final SocketChannel channel;
+    private final MessageCodec codec;
+    private final BufferPool pool;
+    private volatile boolean closed;
+    SelectionKey key;
+    //used by the thread sending messages
+    private final ArrayList<ByteBuffer> filled;
+    //frames begun by the end of each filled buffer
+    private final ArrayList<Long> filledMarks;
+    private long framesBegun;
+    private ByteBuffer current;
+    private ByteBuffer headerBuffer;
+    private final DataOutputStream output;
+    private long written;
+    //guarded by itself, written by whichever thread gets to it first
+    private final ArrayDeque<ByteBuffer> writeQueue;
+    private final ArrayDeque<Long> writeMarks;
+    private volatile long framesWritten;
+    private final ByteBuffer[] gather;
+    //used by the selector thread, null once returned to the pool
+    private ByteBuffer readBuffer;
+    private ByteBuffer largeFrame;
+    //decoded message that did not fit the ring, reading is paused while there is one
+    private Object pendingMessage;
+    private volatile boolean paused;
+    private final FrameInput frameInput;
+    private final DataInputStream input;
+    private final SpscRingBuffer<Object> received;
+    //used by the thread reading messages
+    private final ArrayList<Object> readList;
+    NioConnection(NioTransport transport, SocketChannel channel, MessageCodec codec, BufferPool pool) {
+        this.transport = transport;
+        this.channel = channel;
+        this.codec = codec;
+        this.pool = pool;
+        this.closed = false;
+        this.filled = new ArrayList<>();
+        this.filledMarks = new ArrayList<>();
+        this.framesBegun = 0;
+        this.current = null;
+        this.headerBuffer = null;
+        this.output = new DataOutputStream(new FrameOutput());
+        this.written = 0;
+        this.writeQueue = new ArrayDeque<>();
+        this.writeMarks = new ArrayDeque<>();
+        this.framesWritten = 0;
+        this.gather = new ByteBuffer[MAX_GATHER];
+        this.readBuffer = pool.acquire();
+        this.largeFrame = null;
+        this.pendingMessage = null;
+        this.paused = false;
+        this.frameInput = new FrameInput();
+        this.input = new DataInputStream(this.frameInput);
+        this.received = new SpscRingBuffer<>(RECEIVE_CAPACITY);
+        this.readList = new ArrayList<>();
+    }
+    @Override
+    public void send(Object message) {
+        int header = beginFrame();
+        try {
+            this.codec.write(this.output, message);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        endFrame(header);
+    }
+    @Override
+    public void send(SerializedMessage message) {
+        int header = beginFrame();
+        byte[] data = message.getData();
+        try {
+            this.output.write(data, 0, data.length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        endFrame(header);
+    }
+    private int beginFrame(){
+        if(this.current == null || this.current.remaining() < Integer.BYTES){
+            nextBuffer();
+        }
+        this.headerBuffer = this.current;
+        int header = this.current.position();
+        this.current.putInt(0);
+        this.written = 0;
+        this.framesBegun++;
+        return header;
+    }
+    private void endFrame(int header){
+        //the payload may have spilled into later buffers, the length goes back into the first one
+        this.headerBuffer.putInt(header, (int) this.written);
+        this.headerBuffer = null;
+    }
+    private void nextBuffer(){
+        if(this.current != null){
+            retireCurrent();
+        }
+        this.current = this.pool.acquire();
+    }
+    private void retireCurrent(){
+        this.current.flip();
+        this.filled.add(this.current);
+        this.filledMarks.add(this.framesBegun);
+        this.current = null;
+    }
+    /**
+     * Queues everything sent since the last flush and writes as much of it as the socket takes.
+     */
+    @Override
+    public void flush() {
+        if(this.current != null && this.current.position() > 0){
+            retireCurrent();
+        }
+        if(this.filled.isEmpty()){
+            return;
+        }
+        boolean done;
+        synchronized (this.writeQueue){
+            if(this.closed){
+                this.filled.forEach(this.pool::release);
+                this.filled.clear();
+                this.filledMarks.clear();
+                return;
+            }
+            boolean idle = this.writeQueue.isEmpty();
+            this.writeQueue.addAll(this.filled);
+            this.writeMarks.addAll(this.filledMarks);
+            //while the selector thread is finishing an earlier write it keeps going with these too
+            done = !idle || writeQueued();
+        }
+        this.filled.clear();
+        this.filledMarks.clear();
+        if(!done){
+            this.transport.requestWrite(this);
+        }
+    }
+    /**
+     * @return whether the write queue was emptied, must hold the write queue lock
+     */
+    private boolean writeQueued(){
+        try {
+            while(!this.writeQueue.isEmpty()){
+                int count = 0;
+                for(ByteBuffer buffer : this.writeQueue){
+                    this.gather[count++] = buffer;
+                    if(count == MAX_GATHER){
+                        break;
+                    }
+                }
+                this.channel.write(this.gather, 0, count);
+                //a write that did not get through everything it was given means the socket buffer is full
+                boolean full = this.gather[count - 1].hasRemaining();
+                while(!this.writeQueue.isEmpty() && !this.writeQueue.peek().hasRemaining()){
+                    this.pool.release(this.writeQueue.poll());
+                    this.framesWritten = this.writeMarks.poll();
+                }
+                if(full){
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            close();
+            return true;
+        }
+    }
+    /**
+     * Called on the selector thread when the socket takes data again.
+     * @return whether the write queue was emptied
+     */
+    boolean onWritable(){
+        synchronized (this.writeQueue){
+            return writeQueued();
+        }
+    }
+    /**
+     * Called on the selector thread when data arrived.
+     */
+    void onReadable(){
+        if(this.readBuffer == null){
+            return;
+        }
+        try {
+            if(this.channel.read(this.readBuffer) < 0){
+                close();
+                return;
+            }
+            this.readBuffer.flip();
+            decodeFrames();
+            this.readBuffer.compact();
+            if(this.pendingMessage != null){
+                this.paused = true;
+                this.key.interestOpsAnd(~SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+    /**
+     * Called on the selector thread once the reader made space in the ring.
+     */
+    void resume(){
+        //an earlier request may have resumed already
+        if(this.readBuffer == null || this.pendingMessage == null || !this.received.offer(this.pendingMessage)){
+            return;
+        }
+        this.pendingMessage = null;
+        try {
+            this.readBuffer.flip();
+            decodeFrames();
+            this.readBuffer.compact();
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if(this.pendingMessage == null){
+            this.paused = false;
+            this.key.interestOpsOr(SelectionKey.OP_READ);
+        }
+    }
+    private void decodeFrames() throws IOException {
+        while(this.pendingMessage == null){
+            if(this.largeFrame != null){
+                int count = Math.min(this.largeFrame.remaining(), this.readBuffer.remaining());
+                int limit = this.readBuffer.limit();
+                this.readBuffer.limit(this.readBuffer.position() + count);
+                this.largeFrame.put(this.readBuffer);
+                this.readBuffer.limit(limit);
+                if(this.largeFrame.hasRemaining()){
+                    return;
+                }
+                this.largeFrame.flip();
+                decode(this.largeFrame);
+                this.largeFrame = null;
+                continue;
+            }
+            if(this.readBuffer.remaining() < Integer.BYTES){
+                return;
+            }
+            int length = this.readBuffer.getInt(this.readBuffer.position());
+            if(length < 0 || length > MAX_FRAME_SIZE){
+                throw new IOException("invalid frame length " + length);
+            }
+            if(this.readBuffer.remaining() - Integer.BYTES >= length){
+                this.readBuffer.position(this.readBuffer.position() + Integer.BYTES);
+                int limit = this.readBuffer.limit();
+                int end = this.readBuffer.position() + length;
+                this.readBuffer.limit(end);
+                decode(this.readBuffer);
+                this.readBuffer.limit(limit);
+                this.readBuffer.position(end);
+            } else if(length + Integer.BYTES > this.readBuffer.capacity()){
+                //does not fit the read buffer, gets collected into a buffer of its own
+                this.readBuffer.position(this.readBuffer.position() + Integer.BYTES);
+                this.largeFrame = ByteBuffer.allocate(length);
+            } else {
+                return;
+            }
+        }
+    }
+    private void decode(ByteBuffer frame) throws IOException {
+        this.frameInput.buffer = frame;
+        Object message = this.codec.read(this.input);
+        this.frameInput.buffer = null;
+        if(!this.received.offer(message)){
+            this.pendingMessage = message;
+        }
+    }
+    /**
+     * @return messages received since the last call, the list is reused by the next call
+     */
+    @Override
+    public ArrayList<Object> read() {
+        this.readList.clear();
+        this.received.drainTo(this.readList);
+        if(this.paused){
+            this.transport.requestResume(this);
+        }
+        return this.readList;
+    }
+    /**
+     * Sending thread only.
+     * @return frames sent that the socket did not take yet, a frame counts as taken with the buffer its header is in
+     */
+    @Override
+    public int getQueueDepth() {
+        return (int) (this.framesBegun - this.framesWritten);
+    }
+    public boolean isClosed(){
+        return this.closed;
+    }
+    /**
+     * Closes the socket and returns the queued write buffers and the read buffer to the pool. Buffers the sending
+     * thread still holds go back on its next {@link #flush()}.
+     */
+    @Override
+    public void close(){
+        synchronized (this.writeQueue){
+            if(this.closed){
+                return;
+            }
+            this.closed = true;
+            this.writeQueue.forEach(this.pool::release);
+            this.writeQueue.clear();
+            this.writeMarks.clear();
+        }
+        try {
+            this.channel.close();
+        } catch (IOException ignored){}
+        if(this.transport.isSelectorThread()){
+            releaseReadBuffer();
+        } else {
+            this.transport.runOnSelector(this::releaseReadBuffer);
+        }
+    }
+    private void releaseReadBuffer(){
+        if(this.readBuffer != null){
+            this.pool.release(this.readBuffer);
+            this.readBuffer = null;
+            this.pendingMessage = null;
+        }
+    }
+    private class FrameOutput extends OutputStream {
+        @Override
+        public void write(int b) {
+            if(!current.hasRemaining()){
+                nextBuffer();
+            }
+            current.put((byte) b);
+            written++;
+        }
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            written += length;
+            while(length > 0){
+                if(!current.hasRemaining()){
+                    nextBuffer();
+                }
+                int count = Math.min(length, current.remaining());
+                current.put(data, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+    }
+    private static class FrameInput extends InputStream {
+        public ByteBuffer buffer;
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+        @Override
+        public int read(byte[] data, int offset, int length) {
+            if(!this.buffer.hasRemaining()){
+                return length == 0 ? 0 : -1;
+            }
+            int count = Math.min(length, this.buffer.remaining());
+            this.buffer.get(data, offset, count);
+            return count;
+        }
+    }
+}
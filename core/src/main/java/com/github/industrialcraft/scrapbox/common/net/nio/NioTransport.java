@@ -0,0 +1,198 @@
+package com.github.industrialcraft.scrapbox.common.net.nio;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Selector based replacement for NetX, using the same message ids and codecs. One thread accepts, reads and
+ * finishes writes the sending thread could not complete for all connections of the transport, so a server needs one
+ * transport and a client one per connection.
+ */
+public class NioTransport {
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final int MAX_POOLED_BUFFERS = 256;
+
+    private final MessageCodec codec;
+    private final BufferPool pool;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Runnable> tasks;
+    private final ConcurrentLinkedQueue<NioConnection> accepted;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean closed;
+    private final Thread thread;
+    public NioTransport(MessageCodec codec) throws IOException {
+        this.codec = codec;
+        this.pool = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.accepted = new ConcurrentLinkedQueue<>();
+        this.serverChannel = null;
+        this.closed = false;
+        this.thread = new Thread(this::run, "nio transport");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    public void listen(int port) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        this.serverChannel = serverChannel;
+        runOnSelector(() -> {
+            try {
+                serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+    /**
+     * Connects on the calling thread, blocking until the connection is established or failed.
+     */
+    public NioConnection connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        return register(channel);
+    }
+    /**
+     * @return connection accepted since the last call, null if there is none
+     */
+    public NioConnection pollAccepted(){
+        return this.accepted.poll();
+    }
+    /**
+     * @return address the transport listens on, null if it does not
+     */
+    public InetSocketAddress getAddress(){
+        if(this.serverChannel == null){
+            return null;
+        }
+        try {
+            return (InetSocketAddress) this.serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    private NioConnection register(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        NioConnection connection = new NioConnection(this, channel, this.codec, this.pool);
+        runOnSelector(() -> {
+            try {
+                connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                connection.close();
+            }
+        });
+        return connection;
+    }
+    /**
+     * Makes the selector thread finish writing what the connection could not write on its own.
+     */
+    void requestWrite(NioConnection connection){
+        runOnSelector(() -> {
+            try {
+                if(connection.key != null){
+                    connection.key.interestOpsOr(SelectionKey.OP_WRITE);
+                }
+            } catch (CancelledKeyException ignored){}
+        });
+    }
+    /**
+     * Makes the selector thread continue reading a connection that paused because its reader fell behind.
+     */
+    void requestResume(NioConnection connection){
+        runOnSelector(() -> {
+            try {
+                connection.resume();
+            } catch (CancelledKeyException ignored){}
+        });
+    }
+    void runOnSelector(Runnable task){
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+    boolean isSelectorThread(){
+        return Thread.currentThread() == this.thread;
+    }
+    private void run(){
+        try {
+            while(!this.closed){
+                this.selector.select();
+                Runnable task = this.tasks.poll();
+                while(task != null){
+                    task.run();
+                    task = this.tasks.poll();
+                }
+                Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+                while(iterator.hasNext()){
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if(!key.isValid()){
+                        continue;
+                    }
+                    if(key.isAcceptable()){
+                        accept();
+                        continue;
+                    }
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if(key.isReadable()){
+                            connection.onReadable();
+                        }
+                        if(key.isValid() && key.isWritable() && connection.onWritable()){
+                            key.interestOpsAnd(~SelectionKey.OP_WRITE);
+                        }
+                    } catch (CancelledKeyException e) {
+                        //the connection got closed from another thread
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if(!this.closed){
+                e.printStackTrace();
+            }
+        } finally {
+            for(SelectionKey key : this.selector.keys()){
+                if(key.attachment() instanceof NioConnection){
+                    ((NioConnection) key.attachment()).close();
+                }
+            }
+            try {
+                this.selector.close();
+            } catch (IOException ignored){}
+        }
+    }
+    private void accept() throws IOException {
+        SocketChannel channel = this.serverChannel.accept();
+        while(channel != null){
+            try {
+                this.accepted.add(register(channel));
+            } catch (IOException e) {
+                channel.close();
+            }
+            channel = this.serverChannel.accept();
+        }
+    }
+    public void close(){
+        if(this.closed){
+            return;
+        }
+        this.closed = true;
+        try {
+            if(this.serverChannel != null){
+                this.serverChannel.close();
+            }
+        } catch (IOException ignored){}
+        //the selector thread closes the connections on its way out
+        this.selector.wakeup();
+    }
+}
@@ -1,65 +1,269 @@
 package com.github.industrialcraft.scrapbox.server;
 
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Body;
-import com.github.industrialcraft.scrapbox.common.net.msg.AddGameObjectMessage;
-import com.github.industrialcraft.scrapbox.common.net.msg.DeleteGameObject;
-import com.github.industrialcraft.scrapbox.common.net.msg.MoveGameObjectMessage;
-import com.github.industrialcraft.scrapbox.common.net.msg.SendConnectionListData;
+import com.github.industrialcraft.scrapbox.common.EObjectInteractionMode;
+import com.github.industrialcraft.scrapbox.common.net.SerializedMessage;
+import com.github.industrialcraft.scrapbox.common.net.WireFormat;
+import com.github.industrialcraft.scrapbox.common.net.msg.*;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 public class ClientWorldManager {
+    public static final float POSITION_THRESHOLD = 0.002f;
+    public static final float ROTATION_THRESHOLD = 0.002f;
+    public static final int MAX_PENDING_SNAPSHOTS = 64;
+    //while a player is behind only every this many ticks a snapshot goes out, its ack tells when the client caught up
+    public static final int BEHIND_SNAPSHOT_INTERVAL = 10;
+    //how far around the viewport bodies get replicated, and how much further they must go before being removed
+    public static final float INTEREST_MARGIN = 8;
+    public static final float INTEREST_HYSTERESIS = 4;
+
     public final Server server;
     private int bodyIdGenerator;
     private final ArrayList<BodyInfo> bodies;
+    private final HashMap<Player, SnapshotState> snapshotStates;
+    private final SnapshotFrame frame;
+    private int tick;
+    private final HashMap<ConnectionMarkers.Marker, ConnectionMarkers.Marker> markers;
+    private final LinkedHashMap<ConnectionMarkers.Marker, ConnectionMarkers.Marker> addedMarkers;
+    private final HashSet<ConnectionMarkers.Marker> removedMarkers;
+    private final HashSet<Player> connectionSubscribers;
     public ClientWorldManager(Server server) {
         this.server = server;
         this.bodyIdGenerator = 0;
         this.bodies = new ArrayList<>();
+        this.snapshotStates = new HashMap<>();
+        this.frame = new SnapshotFrame();
+        this.markers = new HashMap<>();
+        this.addedMarkers = new LinkedHashMap<>();
+        this.removedMarkers = new HashSet<>();
+        this.connectionSubscribers = new HashSet<>();
     }
     public int addBody(GameObject gameObject, Body body, String type, boolean selectable){
         BodyInfo bodyInfo = new BodyInfo(body, type, gameObject, ++this.bodyIdGenerator, selectable);
         this.bodies.add(bodyInfo);
+        AddGameObjectMessage message = bodyInfo.createAddMessage();
+        SerializedMessage serializedMessage = server.serialize(message);
         server.players.forEach(player -> {
-            if(player != gameObject) player.send(bodyInfo.createAddMessage());
+            SnapshotState snapshotState = this.snapshotStates.get(player);
+            if(player != gameObject && (snapshotState == null || snapshotState.isInterested(body.getPosition(), false))) sendAddMessage(player, bodyInfo, message, serializedMessage);
         });
         return bodyInfo.id;
     }
     public void removeObject(GameObject gameObject){
         this.bodies.removeIf(bodyInfo -> {
             if(bodyInfo.gameObject == gameObject){
-                server.players.forEach(player -> player.send(new DeleteGameObject(bodyInfo.id)));
+                SerializedMessage deleteMessage = server.serialize(new DeleteGameObject(bodyInfo.id));
+                server.players.forEach(player -> {
+                    SnapshotState snapshotState = this.snapshotStates.get(player);
+                    if(snapshotState == null || snapshotState.visible.contains(bodyInfo.id)) player.send(deleteMessage);
+                });
+                this.snapshotStates.values().forEach(snapshotState -> snapshotState.forget(bodyInfo.id));
                 return true;
             }
             return false;
         });
+        if(gameObject instanceof Player){
+            this.snapshotStates.remove(gameObject);
+            this.connectionSubscribers.remove(gameObject);
+        }
     }
     public void addPlayer(Player player){
+        this.snapshotStates.put(player, new SnapshotState());
         this.bodies.forEach(bodyInfo -> {
-            if(bodyInfo.gameObject != player) player.send(bodyInfo.createAddMessage());
+            if(bodyInfo.gameObject != player) sendAddMessage(player, bodyInfo);
         });
     }
+    private void sendAddMessage(Player player, BodyInfo bodyInfo){
+        AddGameObjectMessage message = bodyInfo.createAddMessage();
+        sendAddMessage(player, bodyInfo, message, server.serialize(message));
+    }
+    private void sendAddMessage(Player player, BodyInfo bodyInfo, AddGameObjectMessage message, SerializedMessage serializedMessage){
+        SnapshotState snapshotState = this.snapshotStates.get(player);
+        if(snapshotState != null){
+            //the add message arrives reliably and before any snapshot, so it is a valid baseline right away
+            snapshotState.baseline.put(bodyInfo.id, new BodyState(message.position, message.rotation, EObjectInteractionMode.Normal, message.animation, false));
+            snapshotState.visible.add(bodyInfo.id);
+        }
+        player.send(serializedMessage);
+    }
+    public void setViewport(Player player, ViewportUpdate viewport){
+        SnapshotState snapshotState = this.snapshotStates.get(player);
+        if(snapshotState != null){
+            snapshotState.viewport = new Rectangle(viewport.center.x - viewport.width / 2, viewport.center.y - viewport.height / 2, viewport.width, viewport.height);
+        }
+    }
+    public void acknowledgeSnapshot(Player player, int sequence){
+        SnapshotState snapshotState = this.snapshotStates.get(player);
+        if(snapshotState != null){
+            snapshotState.acknowledge(sequence);
+        }
+    }
+    /**
+     * Works the same for every transport, as it only depends on the client acknowledging what it received.
+     * @return ticks since the oldest snapshot the player did not acknowledge yet was sent, 0 if there is none
+     */
+    public int getSnapshotLag(Player player){
+        SnapshotState snapshotState = this.snapshotStates.get(player);
+        if(snapshotState == null || snapshotState.pending.isEmpty()){
+            return 0;
+        }
+        return this.tick - snapshotState.pending.peekFirst().tick;
+    }
+    /**
+     * Sends every player one snapshot with the bodies that moved past the thresholds, compared to the state in the
+     * last snapshot that player acknowledged. Nothing is sent when nothing changed. Once a player reported its
+     * viewport, only bodies around it are replicated, bodies entering and leaving it are added and deleted.
+     * <p>
+     * The state and encoded transform of every body are captured once per tick into {@link #frame}, players only
+     * add their selection, interest and animation deltas on top.
+     */
     public void updatePositions(){
-        this.bodies.forEach(bodyInfo -> server.players.forEach(player -> player.send(bodyInfo.createMoveMessage(player))));
-
-        ArrayList<SendConnectionListData.Connection> connections = new ArrayList<>();
-        for(GameObject gameObject : server.gameObjects.values()){
-            HashMap<String, GameObject.ConnectionEdge> connectionPositions = gameObject.getConnectionEdges();
-            for(Map.Entry<String, GameObject.ConnectionData> connection : gameObject.connections.entrySet()){
-                if(gameObject.getId() < connection.getValue().other.getId()) {
-                    connections.add(new SendConnectionListData.Connection(gameObject.getBaseBody().getWorldPoint(connectionPositions.get(connection.getKey()).offset).cpy(), gameObject.getId(), connection.getKey()));
+        this.tick++;
+        WorldSnapshot.EncodedTransforms transforms = this.frame.capture(this.bodies);
+        for(Player player : server.players){
+            SnapshotState snapshotState = this.snapshotStates.get(player);
+            if(snapshotState == null || (player.isBehind() && this.tick % BEHIND_SNAPSHOT_INTERVAL != 0)){
+                continue;
+            }
+            GameObject pinching = player.getPinching();
+            Vehicle pinchingVehicle = pinching == null ? null : pinching.vehicle;
+            ArrayList<MoveGameObjectMessage> moves = new ArrayList<>();
+            int[] transformIndices = new int[this.bodies.size()];
+            HashMap<Integer, BodyState> sent = new HashMap<>();
+            HashSet<Integer> animated = new HashSet<>();
+            for(int i = 0;i < this.bodies.size();i++){
+                BodyInfo bodyInfo = this.bodies.get(i);
+                if(bodyInfo.gameObject == player){
+                    continue;
                 }
+                BodyState state = this.frame.states[i];
+                boolean visible = snapshotState.visible.contains(bodyInfo.id);
+                if(!snapshotState.isInterested(state.position, visible)){
+                    if(visible){
+                        player.send(new DeleteGameObject(bodyInfo.id));
+                        snapshotState.forget(bodyInfo.id);
+                    }
+                    continue;
+                }
+                if(!visible){
+                    sendAddMessage(player, bodyInfo);
+                    continue;
+                }
+                boolean selected = pinchingVehicle != null && pinchingVehicle == bodyInfo.gameObject.vehicle;
+                BodyState baseline = snapshotState.baseline.get(bodyInfo.id);
+                //the client may hold any state of a snapshot it did not acknowledge yet, so those bodies go out again
+                if(baseline != null && !state.differsFrom(baseline, selected) && !snapshotState.isPending(bodyInfo.id)){
+                    continue;
+                }
+                //a delta against the baseline only works when no pending snapshot changed the animation
+                boolean animationPending = snapshotState.isAnimationPending(bodyInfo.id);
+                transformIndices[moves.size()] = i;
+                if(!selected && baseline != null && !animationPending && !state.animation.changedFrom(baseline.animation)){
+                    sent.put(bodyInfo.id, state);
+                    moves.add(this.frame.getUnchangedMove(i, bodyInfo.id));
+                    continue;
+                }
+                if(selected){
+                    state = state.withSelected(true);
+                }
+                //the pending snapshot keeps the full animation state, the message only the slots that changed
+                sent.put(bodyInfo.id, state);
+                if(baseline == null || state.animation.changedFrom(baseline.animation)){
+                    animated.add(bodyInfo.id);
+                }
+                AnimationData animation = baseline == null || animationPending ? state.animation : state.animation.delta(baseline.animation);
+                moves.add(new MoveGameObjectMessage(bodyInfo.id, state.position, state.rotation, state.mode, animation, state.selected));
+            }
+            if(!moves.isEmpty()){
+                player.sendUnreliable(new WorldSnapshot.Compact(snapshotState.addPending(this.tick, sent, animated), moves, transforms, transformIndices));
             }
         }
-        SendConnectionListData connectionListData = new SendConnectionListData(connections);
-        server.players.forEach(player -> player.send(connectionListData));
+
+        if(!this.addedMarkers.isEmpty() || !this.removedMarkers.isEmpty()){
+            if(!this.connectionSubscribers.isEmpty()){
+                SerializedMessage markersMessage = server.serialize(new ConnectionMarkers(false, new ArrayList<>(this.addedMarkers.values()), new ArrayList<>(this.removedMarkers)));
+                this.connectionSubscribers.forEach(player -> player.send(markersMessage));
+            }
+            this.addedMarkers.clear();
+            this.removedMarkers.clear();
+        }
+    }
+    /**
+     * Connection markers belong to the side with the lower id, so calling this for both sides is fine.
+     */
+    public void addConnectionMarker(GameObject first, String firstName, GameObject second, String secondName){
+        GameObject owner = first.getId() < second.getId() ? first : second;
+        String name = owner == first ? firstName : secondName;
+        ConnectionMarkers.Marker marker = new ConnectionMarkers.Marker(owner.getId(), name, owner.getConnectionEdges().get(name).offset.cpy());
+        this.markers.put(marker, marker);
+        this.removedMarkers.remove(marker);
+        this.addedMarkers.put(marker, marker);
+    }
+    public void removeConnectionMarker(GameObject first, String firstName, GameObject second, String secondName){
+        GameObject owner = first.getId() < second.getId() ? first : second;
+        ConnectionMarkers.Marker marker = new ConnectionMarkers.Marker(owner.getId(), owner == first ? firstName : secondName, Vector2.Zero);
+        if(this.markers.remove(marker) != null){
+            this.addedMarkers.remove(marker);
+            this.removedMarkers.add(marker);
+        }
+    }
+    public void setConnectionOverlaySubscribed(Player player, boolean subscribed){
+        if(!subscribed){
+            this.connectionSubscribers.remove(player);
+            return;
+        }
+        if(this.connectionSubscribers.add(player)){
+            player.send(new ConnectionMarkers(true, new ArrayList<>(this.markers.values()), new ArrayList<>()));
+        }
     }
 
+    /**
+     * Per tick state shared by all players, the arrays are reused between ticks.
+     */
+    private static class SnapshotFrame{
+        private BodyState[] states;
+        private MoveGameObjectMessage[] unchangedMoves;
+        private final WorldSnapshot.TransformBuffer transforms;
+        private SnapshotFrame() {
+            this.states = new BodyState[0];
+            this.unchangedMoves = new MoveGameObjectMessage[0];
+            this.transforms = new WorldSnapshot.TransformBuffer();
+        }
+        public WorldSnapshot.EncodedTransforms capture(ArrayList<BodyInfo> bodies){
+            if(this.states.length < bodies.size()){
+                this.states = new BodyState[bodies.size() * 2];
+                this.unchangedMoves = new MoveGameObjectMessage[bodies.size() * 2];
+            }
+            Arrays.fill(this.unchangedMoves, null);
+            this.transforms.reset();
+            for(int i = 0;i < bodies.size();i++){
+                BodyInfo bodyInfo = bodies.get(i);
+                BodyState state = bodyInfo.createState();
+                this.states[i] = state;
+                this.transforms.add(bodyInfo.id, state.position, state.rotation);
+            }
+            return this.transforms.finish();
+        }
+        /**
+         * Move of an unselected body whose animation slots all match the player's baseline, the same for everyone.
+         */
+        public MoveGameObjectMessage getUnchangedMove(int index, int id){
+            MoveGameObjectMessage move = this.unchangedMoves[index];
+            if(move == null){
+                BodyState state = this.states[index];
+                move = new MoveGameObjectMessage(id, state.position, state.rotation, state.mode, state.animation.delta(state.animation), false);
+                this.unchangedMoves[index] = move;
+            }
+            return move;
+        }
+    }
     private static class BodyInfo{
         public final Body body;
         public final String type;
@@ -74,65 +278,343 @@ public class ClientWorldManager {
             this.selectable = selectable;
         }
         public AddGameObjectMessage createAddMessage(){
-            AnimationData animationData = new AnimationData();
+            AnimationData animationData = new AnimationData(gameObject.getAnimationSchema());
             gameObject.getAnimationData(animationData);
-            return new AddGameObjectMessage(this.id, this.type, this.body.getPosition().cpy(), this.body.getAngle(), animationData, selectable);
+            return new AddGameObjectMessage.Compact(this.id, this.type, this.body.getPosition().cpy(), this.body.getAngle(), animationData, selectable);
         }
-        public MoveGameObjectMessage createMoveMessage(Player player){
-            GameObject pinching = player.getPinching();
-            boolean selected = false;
-            if(pinching != null){
-                if(pinching.vehicle == this.gameObject.vehicle){
-                    selected = true;
+        public BodyState createState(){
+            AnimationData animationData = new AnimationData(gameObject.getAnimationSchema());
+            gameObject.getAnimationData(animationData);
+            return new BodyState(this.body.getPosition().cpy(), this.body.getAngle(), gameObject.vehicle.getMode(), animationData, false);
+        }
+    }
+    private static class BodyState{
+        public final Vector2 position;
+        public final float rotation;
+        public final EObjectInteractionMode mode;
+        public final AnimationData animation;
+        public final boolean selected;
+        private BodyState(Vector2 position, float rotation, EObjectInteractionMode mode, AnimationData animation, boolean selected) {
+            this.position = position;
+            this.rotation = rotation;
+            this.mode = mode;
+            this.animation = animation;
+            this.selected = selected;
+        }
+        public BodyState withSelected(boolean selected){
+            return new BodyState(position, rotation, mode, animation, selected);
+        }
+        public boolean differsFrom(BodyState baseline, boolean selected){
+            return selected != baseline.selected
+                    || mode != baseline.mode
+                    || position.dst2(baseline.position) > POSITION_THRESHOLD * POSITION_THRESHOLD
+                    || Math.abs(MathUtils.atan2(MathUtils.sin(rotation - baseline.rotation), MathUtils.cos(rotation - baseline.rotation))) > ROTATION_THRESHOLD
+                    || animation.changedFrom(baseline.animation);
+        }
+    }
+    private static class SnapshotState{
+        private int nextSequence;
+        public final HashMap<Integer, BodyState> baseline;
+        private final ArrayDeque<PendingSnapshot> pending;
+        //number of pending snapshots each body is in, and in how many of them its animation changed
+        private final HashMap<Integer, Integer> pendingCounts;
+        private final HashMap<Integer, Integer> animationPendingCounts;
+        public final HashSet<Integer> visible;
+        public Rectangle viewport;
+        private SnapshotState() {
+            this.nextSequence = 0;
+            this.baseline = new HashMap<>();
+            this.pending = new ArrayDeque<>();
+            this.pendingCounts = new HashMap<>();
+            this.animationPendingCounts = new HashMap<>();
+            this.visible = new HashSet<>();
+            this.viewport = null;
+        }
+        public boolean isInterested(Vector2 position, boolean visible){
+            if(this.viewport == null){
+                return true;
+            }
+            float margin = visible ? INTEREST_MARGIN + INTEREST_HYSTERESIS : INTEREST_MARGIN;
+            return position.x >= viewport.x - margin && position.x <= viewport.x + viewport.width + margin
+                    && position.y >= viewport.y - margin && position.y <= viewport.y + viewport.height + margin;
+        }
+        public int addPending(int tick, HashMap<Integer, BodyState> bodies, HashSet<Integer> animated){
+            int sequence = this.nextSequence++;
+            this.pending.addLast(new PendingSnapshot(sequence, tick, bodies, animated));
+            bodies.keySet().forEach(id -> this.pendingCounts.merge(id, 1, Integer::sum));
+            animated.forEach(id -> this.animationPendingCounts.merge(id, 1, Integer::sum));
+            //every pending body is in the newest snapshot too, so dropping the oldest loses nothing
+            while(this.pending.size() > MAX_PENDING_SNAPSHOTS){
+                removePending(this.pending.removeFirst());
+            }
+            return sequence;
+        }
+        public boolean isPending(int id){
+            return this.pendingCounts.containsKey(id);
+        }
+        public boolean isAnimationPending(int id){
+            return this.animationPendingCounts.containsKey(id);
+        }
+        /**
+         * Older snapshots still pending were lost or skipped by the client. Their bodies were resent in every later
+         * snapshot, so the acknowledged one holds the state the client has for them.
+         */
+        public void acknowledge(int sequence){
+            while(!this.pending.isEmpty() && this.pending.peekFirst().sequence <= sequence){
+                PendingSnapshot snapshot = this.pending.removeFirst();
+                removePending(snapshot);
+                if(snapshot.sequence == sequence){
+                    this.baseline.putAll(snapshot.bodies);
                 }
             }
-            AnimationData animationData = new AnimationData();
-            gameObject.getAnimationData(animationData);
-            return new MoveGameObjectMessage(this.id, this.body.getPosition().cpy(), this.body.getAngle(), gameObject.vehicle.getMode(), animationData, selected);
+        }
+        private void removePending(PendingSnapshot snapshot){
+            snapshot.bodies.keySet().forEach(id -> this.pendingCounts.computeIfPresent(id, (key, count) -> count == 1 ? null : count - 1));
+            snapshot.animated.forEach(id -> this.animationPendingCounts.computeIfPresent(id, (key, count) -> count == 1 ? null : count - 1));
+        }
+        public void forget(int id){
+            this.visible.remove(id);
+            this.baseline.remove(id);
+            this.pendingCounts.remove(id);
+            this.animationPendingCounts.remove(id);
+            for(PendingSnapshot snapshot : this.pending){
+                snapshot.bodies.remove(id);
+                snapshot.animated.remove(id);
+            }
+        }
+    }
+    private static class PendingSnapshot{
+        public final int sequence;
+        public final int tick;
+        public final HashMap<Integer, BodyState> bodies;
+        //bodies whose animation differed from the baseline when this was sent
+        public final HashSet<Integer> animated;
+        private PendingSnapshot(int sequence, int tick, HashMap<Integer, BodyState> bodies, HashSet<Integer> animated) {
+            this.sequence = sequence;
+            this.tick = tick;
+            this.bodies = bodies;
+            this.animated = animated;
+        }
+    }
+    /**
+     * Animation slots of a game object type, declared once by the type and sent to clients in the add message so
+     * later updates only need to carry slot indices.
+     */
+    public static class AnimationSchema{
+        public static final AnimationSchema EMPTY = new AnimationSchema(new String[0], new String[0]);
+        public final String[] numbers;
+        public final String[] strings;
+        public AnimationSchema(String[] numbers, String[] strings) {
+            if(numbers.length > 32 || strings.length > 32){
+                throw new IllegalArgumentException("at most 32 slots of each kind are supported");
+            }
+            this.numbers = numbers;
+            this.strings = strings;
+        }
+        public static AnimationSchema ofNumbers(String... numbers){
+            return new AnimationSchema(numbers, new String[0]);
+        }
+        public static AnimationSchema ofStrings(String... strings){
+            return new AnimationSchema(new String[0], strings);
+        }
+        public int getNumberSlot(String name){
+            return indexOf(numbers, name);
+        }
+        public int getStringSlot(String name){
+            return indexOf(strings, name);
+        }
+        private static int indexOf(String[] slots, String name){
+            for(int i = 0;i < slots.length;i++){
+                if(slots[i].equals(name)){
+                    return i;
+                }
+            }
+            return -1;
+        }
+        public static AnimationSchema fromStream(DataInputStream stream) throws IOException {
+            String[] numbers = new String[stream.readByte()];
+            for(int i = 0;i < numbers.length;i++){
+                numbers[i] = stream.readUTF();
+            }
+            String[] strings = new String[stream.readByte()];
+            for(int i = 0;i < strings.length;i++){
+                strings[i] = stream.readUTF();
+            }
+            return new AnimationSchema(numbers, strings);
+        }
+        public void toStream(DataOutputStream stream) throws IOException {
+            stream.writeByte(numbers.length);
+            for(String number : numbers){
+                stream.writeUTF(number);
+            }
+            stream.writeByte(strings.length);
+            for(String string : strings){
+                stream.writeUTF(string);
+            }
+        }
+        public static AnimationSchema fromCompactStream(DataInputStream stream) throws IOException {
+            String[] numbers = new String[stream.readByte()];
+            for(int i = 0;i < numbers.length;i++){
+                numbers[i] = WireFormat.readString(stream);
+            }
+            String[] strings = new String[stream.readByte()];
+            for(int i = 0;i < strings.length;i++){
+                strings[i] = WireFormat.readString(stream);
+            }
+            return new AnimationSchema(numbers, strings);
+        }
+        public void toCompactStream(DataOutputStream stream) throws IOException {
+            stream.writeByte(numbers.length);
+            for(String number : numbers){
+                WireFormat.writeString(stream, number);
+            }
+            stream.writeByte(strings.length);
+            for(String string : strings){
+                WireFormat.writeString(stream, string);
+            }
         }
     }
+    /**
+     * Slot values of an {@link AnimationSchema}, the masks mark which slots are set. Data decoded from a move
+     * message has no schema and only carries the slots that changed, {@link #applyDelta} merges it into the full
+     * data the client got with the add message.
+     */
     public static class AnimationData{
-        private HashMap<String, Float> numbers;
-        private HashMap<String, String> strings;
-        public AnimationData(){
-            this.numbers = new HashMap<>();
-            this.strings = new HashMap<>();
+        public final AnimationSchema schema;
+        private final float[] numbers;
+        private final String[] strings;
+        private int numberMask;
+        private int stringMask;
+        public AnimationData(AnimationSchema schema){
+            this(schema, new float[schema.numbers.length], new String[schema.strings.length], 0, 0);
+        }
+        private AnimationData(AnimationSchema schema, float[] numbers, String[] strings, int numberMask, int stringMask){
+            this.schema = schema;
+            this.numbers = numbers;
+            this.strings = strings;
+            this.numberMask = numberMask;
+            this.stringMask = stringMask;
         }
-        public AnimationData(DataInputStream stream) throws IOException {
-            this.numbers = new HashMap<>();
-            int count = stream.readInt();
-            for(int i = 0;i < count;i++){
-                this.numbers.put(stream.readUTF(), stream.readFloat());
+        public static AnimationData fromStream(DataInputStream stream, AnimationSchema schema) throws IOException {
+            int numberMask = stream.readInt();
+            float[] numbers = new float[schema == null ? slotCount(numberMask) : schema.numbers.length];
+            for(int i = 0;i < numbers.length;i++){
+                if((numberMask & (1 << i)) != 0) numbers[i] = stream.readFloat();
             }
-            this.strings = new HashMap<>();
-            count = stream.readInt();
-            for(int i = 0;i < count;i++){
-                this.strings.put(stream.readUTF(), stream.readUTF());
+            int stringMask = stream.readInt();
+            String[] strings = new String[schema == null ? slotCount(stringMask) : schema.strings.length];
+            for(int i = 0;i < strings.length;i++){
+                if((stringMask & (1 << i)) != 0) strings[i] = stream.readUTF();
             }
+            return new AnimationData(schema, numbers, strings, numberMask, stringMask);
         }
         public void toStream(DataOutputStream stream) throws IOException {
-            stream.writeInt(numbers.size());
-            for(Map.Entry<String, Float> entry : numbers.entrySet()){
-                stream.writeUTF(entry.getKey());
-                stream.writeFloat(entry.getValue());
+            stream.writeInt(numberMask);
+            for(int i = 0;i < numbers.length;i++){
+                if((numberMask & (1 << i)) != 0) stream.writeFloat(numbers[i]);
+            }
+            stream.writeInt(stringMask);
+            for(int i = 0;i < strings.length;i++){
+                if((stringMask & (1 << i)) != 0) stream.writeUTF(strings[i]);
+            }
+        }
+        public static AnimationData fromCompactStream(DataInputStream stream, AnimationSchema schema) throws IOException {
+            int numberMask = WireFormat.readVarInt(stream);
+            float[] numbers = new float[schema == null ? slotCount(numberMask) : schema.numbers.length];
+            for(int i = 0;i < numbers.length;i++){
+                if((numberMask & (1 << i)) != 0) numbers[i] = WireFormat.readHalf(stream);
             }
-            stream.writeInt(strings.size());
-            for(Map.Entry<String, String> entry : strings.entrySet()){
-                stream.writeUTF(entry.getKey());
-                stream.writeUTF(entry.getValue());
+            int stringMask = WireFormat.readVarInt(stream);
+            String[] strings = new String[schema == null ? slotCount(stringMask) : schema.strings.length];
+            for(int i = 0;i < strings.length;i++){
+                if((stringMask & (1 << i)) != 0) strings[i] = WireFormat.readString(stream);
             }
+            return new AnimationData(schema, numbers, strings, numberMask, stringMask);
+        }
+        public void toCompactStream(DataOutputStream stream) throws IOException {
+            WireFormat.writeVarInt(stream, numberMask);
+            for(int i = 0;i < numbers.length;i++){
+                if((numberMask & (1 << i)) != 0) WireFormat.writeHalf(stream, numbers[i]);
+            }
+            WireFormat.writeVarInt(stream, stringMask);
+            for(int i = 0;i < strings.length;i++){
+                if((stringMask & (1 << i)) != 0) WireFormat.writeString(stream, strings[i]);
+            }
+        }
+        private static int slotCount(int mask){
+            return 32 - Integer.numberOfLeadingZeros(mask);
+        }
+        private static int slotMask(int slotCount){
+            return slotCount >= 32 ? -1 : (1 << slotCount) - 1;
         }
         public void addNumber(String name, float number){
-            this.numbers.put(name, number);
+            int slot = schema.getNumberSlot(name);
+            if(slot == -1){
+                throw new IllegalArgumentException("number slot " + name + " is not in the animation schema");
+            }
+            this.numbers[slot] = number;
+            this.numberMask |= 1 << slot;
         }
         public void addString(String name, String text){
-            this.strings.put(name, text);
+            int slot = schema.getStringSlot(name);
+            if(slot == -1){
+                throw new IllegalArgumentException("string slot " + name + " is not in the animation schema");
+            }
+            this.strings[slot] = text;
+            this.stringMask |= 1 << slot;
         }
         public float getNumber(String name, float defaultNumber){
-            return this.numbers.getOrDefault(name, defaultNumber);
+            int slot = schema.getNumberSlot(name);
+            return slot == -1 || (numberMask & (1 << slot)) == 0 ? defaultNumber : numbers[slot];
         }
         public String getString(String name, String defaultString){
-            return this.strings.getOrDefault(name, defaultString);
+            int slot = schema.getStringSlot(name);
+            return slot == -1 || (stringMask & (1 << slot)) == 0 ? defaultString : strings[slot];
+        }
+        private int changedNumbers(AnimationData baseline){
+            int changed = 0;
+            for(int i = 0;i < numbers.length;i++){
+                int bit = 1 << i;
+                if((numberMask & bit) != 0 && ((baseline.numberMask & bit) == 0 || baseline.numbers[i] != numbers[i])){
+                    changed |= bit;
+                }
+            }
+            return changed;
+        }
+        private int changedStrings(AnimationData baseline){
+            int changed = 0;
+            for(int i = 0;i < strings.length;i++){
+                int bit = 1 << i;
+                if((stringMask & bit) != 0 && ((baseline.stringMask & bit) == 0 || !baseline.strings[i].equals(strings[i]))){
+                    changed |= bit;
+                }
+            }
+            return changed;
+        }
+        /**
+         * Slots that were cleared since the baseline are not sent, the client keeps their previous value.
+         */
+        public boolean changedFrom(AnimationData baseline){
+            return changedNumbers(baseline) != 0 || changedStrings(baseline) != 0;
+        }
+        public AnimationData delta(AnimationData baseline){
+            if(baseline == null){
+                return this;
+            }
+            return new AnimationData(schema, numbers, strings, changedNumbers(baseline), changedStrings(baseline));
+        }
+        public AnimationData applyDelta(AnimationData delta){
+            float[] numbers = this.numbers.clone();
+            String[] strings = this.strings.clone();
+            int numberMask = this.numberMask | (delta.numberMask & slotMask(numbers.length));
+            int stringMask = this.stringMask | (delta.stringMask & slotMask(strings.length));
+            for(int i = 0;i < Math.min(numbers.length, delta.numbers.length);i++){
+                if((delta.numberMask & (1 << i)) != 0) numbers[i] = delta.numbers[i];
+            }
+            for(int i = 0;i < Math.min(strings.length, delta.strings.length);i++){
+                if((delta.stringMask & (1 << i)) != 0) strings[i] = delta.strings[i];
+            }
+            return new AnimationData(schema, numbers, strings, numberMask, stringMask);
         }
     }
 }
@@ -0,0 +1,159 @@
+package com.github.industrialcraft.scrapbox.server;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Spatial hash of the open connection edges of all game objects, with cells as large as the weld snap distance so
+ * a weld search only has to look at the 3x3 cells around an edge. Open edges of an object are only collected again
+ * after its connections change, and their positions only refreshed in {@link #update()} once its base body moved.
+ */
+public class ConnectionEdgeIndex {
+    public static final float CELL_SIZE = GameObject.WELD_DISTANCE;
+
+    private final HashMap<Long, ArrayList<IndexedEdge>> cells;
+    private final HashMap<GameObject, ObjectEdges> edges;
+    private final HashSet<GameObject> dirty;
+    public ConnectionEdgeIndex() {
+        this.cells = new HashMap<>();
+        this.edges = new HashMap<>();
+        this.dirty = new HashSet<>();
+    }
+    /**
+     * Call after an object was added or removed or its connections changed.
+     */
+    public void markDirty(GameObject gameObject){
+        this.dirty.add(gameObject);
+    }
+    public void update(){
+        for(GameObject gameObject : this.dirty){
+            ObjectEdges oldEdges = this.edges.remove(gameObject);
+            if(oldEdges != null){
+                for(IndexedEdge edge : oldEdges.edges){
+                    removeFromCell(edge);
+                }
+            }
+            if(gameObject.isRemoved()){
+                continue;
+            }
+            ObjectEdges newEdges = new ObjectEdges();
+            for(GameObject.GameObjectConnectionEdge edge : gameObject.getOpenConnections().values()){
+                IndexedEdge indexedEdge = new IndexedEdge(edge);
+                indexedEdge.refresh();
+                addToCell(indexedEdge);
+                newEdges.edges.add(indexedEdge);
+            }
+            newEdges.moved(gameObject.getBaseBody());
+            this.edges.put(gameObject, newEdges);
+        }
+        this.dirty.clear();
+        Iterator<Map.Entry<GameObject, ObjectEdges>> iterator = this.edges.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<GameObject, ObjectEdges> entry = iterator.next();
+            if(entry.getKey().isRemoved()){
+                //objects cleared without being destroyed, like on loading a save
+                entry.getValue().edges.forEach(this::removeFromCell);
+                iterator.remove();
+                continue;
+            }
+            //sleeping and static bodies keep their transform, their edges stay where they are
+            if(entry.getValue().edges.isEmpty() || !entry.getValue().moved(entry.getKey().getBaseBody())){
+                continue;
+            }
+            for(IndexedEdge edge : entry.getValue().edges){
+                long oldCell = edge.cell;
+                edge.refresh();
+                if(edge.cell != oldCell){
+                    ArrayList<IndexedEdge> cell = this.cells.get(oldCell);
+                    cell.remove(edge);
+                    if(cell.isEmpty()){
+                        this.cells.remove(oldCell);
+                    }
+                    addToCell(edge);
+                }
+            }
+        }
+    }
+    /**
+     * @return open edges of the game object, as of the last {@link #update()}
+     */
+    public ArrayList<IndexedEdge> getEdges(GameObject gameObject){
+        ObjectEdges objectEdges = this.edges.get(gameObject);
+        return objectEdges == null ? new ArrayList<>() : objectEdges.edges;
+    }
+    /**
+     * Calls the consumer with every indexed edge in the cells around the position, which includes all edges that
+     * were closer than {@link #CELL_SIZE} at the last {@link #update()}. Callers check the actual distance.
+     */
+    public void forEachNear(Vector2 position, Consumer<IndexedEdge> consumer){
+        int cellX = MathUtils.floor(position.x / CELL_SIZE);
+        int cellY = MathUtils.floor(position.y / CELL_SIZE);
+        for(int x = cellX - 1;x <= cellX + 1;x++){
+            for(int y = cellY - 1;y <= cellY + 1;y++){
+                ArrayList<IndexedEdge> cell = this.cells.get(cellKey(x, y));
+                if(cell == null){
+                    continue;
+                }
+                cell.forEach(consumer);
+            }
+        }
+    }
+    private void addToCell(IndexedEdge edge){
+        this.cells.computeIfAbsent(edge.cell, key -> new ArrayList<>()).add(edge);
+    }
+    private void removeFromCell(IndexedEdge edge){
+        ArrayList<IndexedEdge> cell = this.cells.get(edge.cell);
+        if(cell != null){
+            cell.remove(edge);
+            if(cell.isEmpty()){
+                this.cells.remove(edge.cell);
+            }
+        }
+    }
+    private static long cellKey(int x, int y){
+        return (((long) x) << 32) | (y & 0xFFFFFFFFL);
+    }
+    private static class ObjectEdges{
+        public final ArrayList<IndexedEdge> edges;
+        private float x;
+        private float y;
+        private float angle;
+        private ObjectEdges() {
+            this.edges = new ArrayList<>();
+            this.x = Float.NaN;
+        }
+        /**
+         * @return whether the body's transform changed since the last call
+         */
+        private boolean moved(Body body){
+            Vector2 position = body.getPosition();
+            float angle = body.getAngle();
+            if(position.x == this.x && position.y == this.y && angle == this.angle){
+                return false;
+            }
+            this.x = position.x;
+            this.y = position.y;
+            this.angle = angle;
+            return true;
+        }
+    }
+    public static class IndexedEdge{
+        public final GameObject.GameObjectConnectionEdge edge;
+        private long cell;
+        private IndexedEdge(GameObject.GameObjectConnectionEdge edge) {
+            this.edge = edge;
+        }
+        private void refresh(){
+            Vector2 position = this.edge.getPosition();
+            this.cell = cellKey(MathUtils.floor(position.x / CELL_SIZE), MathUtils.floor(position.y / CELL_SIZE));
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.util.*;
 
 public abstract class GameObject {
     public static final double HALF_PI = Math.PI / 2;
+    public static final float WELD_DISTANCE = 0.2f;
 
     public final Server server;
     public final HashMap<String,Body> bodies;
@@ -79,7 +80,10 @@ public abstract class GameObject {
         this.bodies.forEach((s, body) -> server.physics.destroyBody(body));
         this.connections.forEach((s, connectionData) -> {
             connectionData.other.connections.remove(connectionData.otherName);
+            this.server.clientWorldManager.removeConnectionMarker(this, s, connectionData.other, connectionData.otherName);
+            this.server.connectionEdgeIndex.markDirty(connectionData.other);
         });
+        this.server.connectionEdgeIndex.markDirty(this);
         this.server.clientWorldManager.removeObject(this);
     }
     public boolean isRemoved(){
@@ -96,6 +100,9 @@ public abstract class GameObject {
         ConnectionData connectionData = connections.remove(name);
         connectionData.other.connections.remove(connectionData.otherName);
         server.physics.destroyJoint(connectionData.joint);
+        server.clientWorldManager.removeConnectionMarker(this, name, connectionData.other, connectionData.otherName);
+        server.connectionEdgeIndex.markDirty(this);
+        server.connectionEdgeIndex.markDirty(connectionData.other);
 
         HashSet<GameObject> originalObjects = new HashSet<>(this.vehicle.gameObjects);
         while(!originalObjects.isEmpty()) {
@@ -211,6 +218,8 @@ public abstract class GameObject {
     }
     public void connect(String id, GameObject gameObject, String otherId, Joint joint){
         this.connections.put(id, new ConnectionData(gameObject, otherId, joint));
+        this.server.clientWorldManager.addConnectionMarker(this, id, gameObject, otherId);
+        this.server.connectionEdgeIndex.markDirty(this);
     }
     public void updateUI(){
         ArrayList<EditorUIRow> rows = createEditorUI();
@@ -231,21 +240,28 @@ public abstract class GameObject {
         }
         return output;
     }
+    /**
+     * Only looks at edges near this object's open edges, using {@link Server#connectionEdgeIndex}.
+     */
     public ArrayList<WeldCandidate> getPossibleWelds(){
         ArrayList<WeldCandidate> weldCandidates = new ArrayList<>();
-        for(Map.Entry<String, GameObjectConnectionEdge> edge1 : this.getOpenConnections().entrySet()){
-            for(GameObject other : this.server.gameObjects.values()){
-                if(other == this){
-                    continue;
+        for(ConnectionEdgeIndex.IndexedEdge indexedEdge : this.server.connectionEdgeIndex.getEdges(this)){
+            GameObjectConnectionEdge edge1 = indexedEdge.edge;
+            //the index is refreshed once per tick, welds made since then are filtered out here
+            if(isSideUsed(edge1.name)){
+                continue;
+            }
+            Vector2 position = edge1.getPosition().cpy();
+            this.server.connectionEdgeIndex.forEachNear(position, nearEdge -> {
+                GameObjectConnectionEdge edge2 = nearEdge.edge;
+                GameObject other = edge2.gameObject;
+                if(other == this || other.isRemoved() || other.isSideUsed(edge2.name) || !(this instanceof FrameGameObject || other instanceof FrameGameObject)){
+                    return;
                 }
-                if(this instanceof FrameGameObject || other instanceof FrameGameObject) {
-                    for (Map.Entry<String, GameObjectConnectionEdge> edge2 : other.getOpenConnections().entrySet()) {
-                        if (edge1.getValue().collides(edge2.getValue())) {
-                            weldCandidates.add(new WeldCandidate(edge1.getValue(), edge1.getKey(), edge2.getValue(), edge2.getKey()));
-                        }
-                    }
+                if(edge1.collides(edge2)){
+                    weldCandidates.add(new WeldCandidate(edge1, edge1.name, edge2, edge2.name));
                 }
-            }
+            });
         }
         return weldCandidates;
     }
@@ -282,6 +298,9 @@ public abstract class GameObject {
 
     public abstract String getType();
 
+    public ClientWorldManager.AnimationSchema getAnimationSchema(){
+        return ClientWorldManager.AnimationSchema.EMPTY;
+    }
     public void getAnimationData(ClientWorldManager.AnimationData animationData){
 
     }
@@ -312,7 +331,7 @@ public abstract class GameObject {
             return gameObject.getBaseBody().getWorldPoint(connectionEdge.offset);
         }
         public boolean collides(GameObjectConnectionEdge other){
-            return this.getPosition().dst(other.getPosition()) < 0.2 && (this.connectionEdge.internal==other.connectionEdge.internal);
+            return this.getPosition().dst(other.getPosition()) < WELD_DISTANCE && (this.connectionEdge.internal==other.connectionEdge.internal);
         }
     }
     public static class ConnectionData{
@@ -0,0 +1,162 @@
+package com.github.industrialcraft.scrapbox.server;
+
+import com.badlogic.gdx.math.Vector2;
+import com.github.industrialcraft.scrapbox.common.net.msg.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Drops player input superseded within the same tick and enforces per message type rate limits, so a fast client
+ * cannot make everyone's tick slower. Only the last {@link MouseMoved} is kept, and consecutive terrain stamps of the
+ * same brush are collected into a {@link TerrainStroke}, which the terrain applies as one shape.
+ * <p>
+ * Messages over their type's rate are not dropped but deferred to the next tick, keeping their order within the type.
+ * The defaults only cover messages that are expensive to handle and are well above what a normal client sends. They
+ * can be changed with the {@code scrapbox.rateLimits} system property, a comma separated list like
+ * {@code PlaceTerrain=250/50} giving messages per second and burst, or {@code EditorUIInput=off}.
+ */
+public class InputFilter {
+    //a client with more deferred messages keeps sending faster than its limits allow
+    public static final int MAX_DEFERRED = 1024;
+
+    private final HashMap<Class<?>, RateLimit> rateLimits;
+    private ArrayList<Object> deferred;
+    private ArrayList<Object> input;
+    private final HashSet<Class<?>> deferredTypes;
+    public InputFilter() {
+        this.rateLimits = new HashMap<>();
+        this.deferred = new ArrayList<>();
+        this.input = new ArrayList<>();
+        this.deferredTypes = new HashSet<>();
+        //every stamp is a polygon clip on the terrain worker
+        setRateLimit(PlaceTerrain.class, 250, 50);
+        //answered with the whole terrain
+        setRateLimit(RequestTerrainResync.class, 1, 3);
+        //rebuild the editor UI for every viewer
+        setRateLimit(EditorUIInput.class, 60, 20);
+        setRateLimit(OpenGameObjectEditUI.class, 10, 5);
+        setRateLimit(CreateValueConnection.class, 20, 10);
+        configureFromProperty();
+    }
+    private void configureFromProperty(){
+        String limits = System.getProperty("scrapbox.rateLimits", "");
+        for(String entry : limits.split(",")){
+            if(entry.isBlank()){
+                continue;
+            }
+            String[] parts = entry.trim().split("=");
+            try {
+                Class<?> type = Class.forName(MouseMoved.class.getPackageName() + "." + parts[0]);
+                if(parts[1].equals("off")){
+                    removeRateLimit(type);
+                } else {
+                    String[] rate = parts[1].split("/");
+                    setRateLimit(type, Float.parseFloat(rate[0]), Float.parseFloat(rate[1]));
+                }
+            } catch (ClassNotFoundException | RuntimeException e) {
+                System.out.println("invalid rate limit " + entry + ", ignoring it");
+            }
+        }
+    }
+    /**
+     * Messages of this type above the rate are deferred to later ticks.
+     */
+    public void setRateLimit(Class<?> type, float perSecond, float burst){
+        this.rateLimits.put(type, new RateLimit(perSecond, burst));
+    }
+    public void removeRateLimit(Class<?> type){
+        this.rateLimits.remove(type);
+    }
+    /**
+     * @return messages held back for the next tick
+     */
+    public int getDeferredCount(){
+        return this.deferred.size();
+    }
+    public ArrayList<Object> filter(ArrayList<Object> messages){
+        //what was deferred goes first, the lists are swapped so nothing gets allocated
+        ArrayList<Object> input = this.deferred;
+        this.deferred = this.input;
+        this.input = input;
+        input.addAll(messages);
+        this.deferred.clear();
+        this.deferredTypes.clear();
+        int lastMouseMoved = -1;
+        for(int i = 0;i < input.size();i++){
+            Object message = input.get(i);
+            if(message instanceof MouseMoved){
+                lastMouseMoved = i;
+            }
+        }
+        long time = System.nanoTime();
+        ArrayList<Object> filtered = new ArrayList<>(input.size());
+        for(int i = 0;i < input.size();i++){
+            Object message = input.get(i);
+            if(message instanceof MouseMoved && i != lastMouseMoved){
+                continue;
+            }
+            RateLimit rateLimit = this.rateLimits.get(message.getClass());
+            //once a message of a type waits, later ones of the type wait behind it
+            if(rateLimit != null && (this.deferredTypes.contains(message.getClass()) || !rateLimit.take(time))){
+                this.deferred.add(message);
+                this.deferredTypes.add(message.getClass());
+                continue;
+            }
+            if(message instanceof PlaceTerrain){
+                PlaceTerrain placeTerrain = (PlaceTerrain) message;
+                Object last = filtered.isEmpty() ? null : filtered.get(filtered.size() - 1);
+                if(last instanceof TerrainStroke && ((TerrainStroke) last).sameBrush(placeTerrain)){
+                    ((TerrainStroke) last).positions.add(placeTerrain.position);
+                } else {
+                    filtered.add(new TerrainStroke(placeTerrain));
+                }
+                continue;
+            }
+            filtered.add(message);
+        }
+        input.clear();
+        return filtered;
+    }
+    /**
+     * Stamps of one brush received in a row within a tick, none of them is left out.
+     */
+    public static class TerrainStroke{
+        public final String type;
+        public final float radius;
+        public final boolean rectangle;
+        public final ArrayList<Vector2> positions;
+        private TerrainStroke(PlaceTerrain placeTerrain) {
+            this.type = placeTerrain.type;
+            this.radius = placeTerrain.radius;
+            this.rectangle = placeTerrain.rectangle;
+            this.positions = new ArrayList<>();
+            this.positions.add(placeTerrain.position);
+        }
+        private boolean sameBrush(PlaceTerrain placeTerrain){
+            return this.type.equals(placeTerrain.type) && this.radius == placeTerrain.radius && this.rectangle == placeTerrain.rectangle;
+        }
+    }
+    private static class RateLimit{
+        public final float perSecond;
+        public final float burst;
+        private float tokens;
+        private long lastRefill;
+        private RateLimit(float perSecond, float burst) {
+            this.perSecond = perSecond;
+            this.burst = burst;
+            this.tokens = burst;
+            this.lastRefill = System.nanoTime();
+        }
+        public boolean take(long time){
+            this.tokens = Math.min(this.burst, this.tokens + (time - this.lastRefill) / 1e9f * this.perSecond);
+            this.lastRefill = time;
+            if(this.tokens < 1){
+                return false;
+            }
+            this.tokens--;
+            return true;
+        }
+    }
+}
@@ -7,6 +7,8 @@ import com.badlogic.gdx.physics.box2d.joints.MouseJoint;
 import com.badlogic.gdx.physics.box2d.joints.MouseJointDef;
 import com.github.industrialcraft.scrapbox.common.EObjectInteractionMode;
 import com.github.industrialcraft.scrapbox.common.net.IConnection;
+import com.github.industrialcraft.scrapbox.common.net.LocalConnection;
+import com.github.industrialcraft.scrapbox.common.net.SerializedMessage;
 import com.github.industrialcraft.scrapbox.common.net.msg.*;
 import com.github.industrialcraft.scrapbox.server.game.ControllerGameObject;
 import com.github.industrialcraft.scrapbox.server.game.RopeGameObject;
@@ -17,11 +19,23 @@ import java.util.Objects;
 import java.util.UUID;
 
 public class Player extends GameObject{
+    //queued messages or snapshot lag in ticks above which snapshots and terrain updates are held back
+    public static final int SOFT_QUEUE_LIMIT = 2048;
+    public static final int SOFT_SNAPSHOT_LAG = 20;
+    //queued messages a client must not stay above for HARD_LIMIT_TICKS, half of what a local connection holds
+    public static final int HARD_QUEUE_LIMIT = LocalConnection.CAPACITY / 2;
+    public static final int HARD_LIMIT_TICKS = 20 * 10;
+    //snapshot lag in ticks a remote client gets disconnected at
+    public static final int HARD_SNAPSHOT_LAG = 20 * 10;
+    private static final ClientWorldManager.AnimationSchema ANIMATION_SCHEMA = ClientWorldManager.AnimationSchema.ofStrings("color");
     public final Server server;
     public final IConnection connection;
     private PinchingData pinching;
     private boolean isDisconnected;
     public final UUID uuid;
+    public final InputFilter inputFilter;
+    private boolean terrainStale;
+    private int ticksOverHardLimit;
     public Player(Server server, IConnection connection) {
         super(Vector2.Zero.cpy(), 0, server);
         this.server = server;
@@ -29,12 +43,20 @@ public class Player extends GameObject{
         this.pinching = null;
         this.isDisconnected = false;
         this.uuid = UUID.randomUUID();
+        this.inputFilter = new InputFilter();
+        this.terrainStale = false;
+        this.ticksOverHardLimit = 0;
 
         BodyDef bodyDef = new BodyDef();
         bodyDef.type = BodyDef.BodyType.KinematicBody;
         setBody("base", "player", server.physics.createBody(bodyDef));
     }
 
+    @Override
+    public ClientWorldManager.AnimationSchema getAnimationSchema() {
+        return ANIMATION_SCHEMA;
+    }
+
     @Override
     public void getAnimationData(ClientWorldManager.AnimationData animationData) {
         animationData.addString("color", Integer.toHexString(((int) this.uuid.getLeastSignificantBits()) >>> 8));
@@ -44,12 +66,22 @@ public class Player extends GameObject{
         if(isDisconnected){
             remove();
         }
+        checkLimits();
+        if(this.terrainStale && !isBehind()){
+            this.terrainStale = false;
+            this.send(server.terrain.createMessage());
+        }
         if(this.pinching != null){
             if(this.pinching.mouseJoint.getBodyB() == null){
                 this.pinching = null;
             }
         }
-        for(Object message : this.connection.read()){
+        ArrayList<Object> messages = this.inputFilter.filter(this.connection.read());
+        if(this.inputFilter.getDeferredCount() > InputFilter.MAX_DEFERRED){
+            kick(this.inputFilter.getDeferredCount() + " messages over the rate limits");
+            return;
+        }
+        for(Object message : messages){
             if(message instanceof ToggleGamePaused){
                 ToggleGamePaused toggleGamePaused = (ToggleGamePaused) message;
                 if(toggleGamePaused.step){
@@ -110,9 +142,20 @@ public class Player extends GameObject{
                 gameObject.vehicle.setMode(EObjectInteractionMode.Ghost);
                 connection.send(new TakeObjectResponse(gameObject.getId(), takeObject.offset));
             }
-            if(message instanceof PlaceTerrain){
-                PlaceTerrain placeTerrain = (PlaceTerrain) message;
-                server.terrain.placeFromMessage(placeTerrain);
+            if(message instanceof ConnectionOverlaySubscription){
+                ConnectionOverlaySubscription connectionOverlaySubscription = (ConnectionOverlaySubscription) message;
+                server.clientWorldManager.setConnectionOverlaySubscribed(this, connectionOverlaySubscription.subscribed);
+            }
+            if(message instanceof ViewportUpdate){
+                ViewportUpdate viewportUpdate = (ViewportUpdate) message;
+                server.clientWorldManager.setViewport(this, viewportUpdate);
+            }
+            if(message instanceof WorldSnapshotAck){
+                WorldSnapshotAck worldSnapshotAck = (WorldSnapshotAck) message;
+                server.clientWorldManager.acknowledgeSnapshot(this, worldSnapshotAck.sequence);
+            }
+            if(message instanceof InputFilter.TerrainStroke){
+                server.terrain.placeStroke((InputFilter.TerrainStroke) message);
             }
             if(message instanceof PinchingGhostToggle){
                 GameObject pinching = getPinching();
@@ -203,13 +246,14 @@ public class Player extends GameObject{
                 GameObject gameObject = server.gameObjects.get(destroyJoint.gameObjectId);
                 gameObject.disconnect(destroyJoint.name);
             }
-            if(message instanceof RequestControllerState){
-                RequestControllerState requestControllerState = (RequestControllerState) message;
-                GameObject gameObject = server.gameObjects.get(requestControllerState.gameObjectId);
+            if(message instanceof RequestTerrainResync){
+                this.send(server.terrain.createMessage());
+            }
+            if(message instanceof ControllerStateSubscription){
+                ControllerStateSubscription controllerStateSubscription = (ControllerStateSubscription) message;
+                GameObject gameObject = server.gameObjects.get(controllerStateSubscription.gameObjectId);
                 if(gameObject instanceof ControllerGameObject){
-                    boolean[] state = new boolean[10];
-                    System.arraycopy(((ControllerGameObject) gameObject).inputs, 0, state, 0, 10);
-                    this.send(new ResponseControllerState(state));
+                    ((ControllerGameObject) gameObject).setStateSubscribed(this, controllerStateSubscription.subscribed);
                 }
             }
         }
@@ -218,6 +262,53 @@ public class Player extends GameObject{
     public HashMap<String, ConnectionEdge> getConnectionEdges() {
         return new HashMap<>();
     }
+    /**
+     * @return messages sent to the player that the connection did not deliver yet, 0 if the connection cannot tell
+     */
+    public int getQueueDepth(){
+        return this.connection.getQueueDepth();
+    }
+    /**
+     * Whether the connection piles up messages or the client stopped acknowledging snapshots in time. The snapshot
+     * lag also covers connections that cannot tell their queue depth. Snapshots are relative to what the client
+     * acknowledged, so skipping them while it is behind loses nothing, the first one sent afterwards brings it to
+     * the latest state.
+     */
+    public boolean isBehind(){
+        return getQueueDepth() > SOFT_QUEUE_LIMIT || server.clientWorldManager.getSnapshotLag(this) > SOFT_SNAPSHOT_LAG;
+    }
+    /**
+     * Terrain changed while the player was behind, it gets the whole terrain once it caught up.
+     */
+    public void markTerrainStale(){
+        this.terrainStale = true;
+    }
+    private void checkLimits(){
+        if(isDisconnected){
+            return;
+        }
+        int queueDepth = getQueueDepth();
+        if(queueDepth <= HARD_QUEUE_LIMIT){
+            this.ticksOverHardLimit = 0;
+        } else {
+            this.ticksOverHardLimit++;
+        }
+        if(this.ticksOverHardLimit > HARD_LIMIT_TICKS){
+            kick(queueDepth + " messages queued");
+            return;
+        }
+        //a stalled local render thread loses nothing by waiting as long as its queue stays bounded, so only the
+        //queue limit applies to it
+        int lag = server.clientWorldManager.getSnapshotLag(this);
+        if(!(this.connection instanceof LocalConnection) && lag > HARD_SNAPSHOT_LAG){
+            kick("no snapshot acknowledged for " + lag + " ticks");
+        }
+    }
+    private void kick(String reason){
+        System.out.println("disconnecting player " + this.uuid + ", " + reason);
+        disconnect();
+        this.connection.close();
+    }
     public void disconnect(){
         this.isDisconnected = true;
         clearPinched();
@@ -249,6 +340,12 @@ public class Player extends GameObject{
     public void send(Object message){
         this.connection.send(message);
     }
+    public void sendUnreliable(Object message){
+        this.connection.sendUnreliable(message);
+    }
+    public void send(SerializedMessage message){
+        this.connection.send(message);
+    }
     public void sendAll(ArrayList<Object> messages){
         for(Object message : messages){
             this.connection.send(message);
@@ -1,5 +1,8 @@
 package com.github.industrialcraft.scrapbox.server;
 
+import clipper2.core.Path64;
+import clipper2.core.Paths64;
+import clipper2.core.Point64;
 import com.badlogic.gdx.math.Vector2;
 
 import java.io.DataInputStream;
@@ -11,12 +14,16 @@ import java.util.Map;
 import java.util.UUID;
 
 public class SaveFile {
-    public final HashMap<String, ArrayList<ArrayList<Vector2>>> terrain;
+    private static final int FIXED_POINT_TERRAIN = -1;
+
+    public final HashMap<String, Paths64> terrain;
+    public final double terrainScale;
     public final ArrayList<SavedGameObject> savedGameObjects;
     public final ArrayList<SavedJoint> savedJoints;
     public final ArrayList<SavedVehicle> savedVehicles;
-    public SaveFile(HashMap<String, ArrayList<ArrayList<Vector2>>> terrain, ArrayList<SavedGameObject> savedGameObjects, ArrayList<SavedJoint> savedJoints, ArrayList<SavedVehicle> savedVehicles) {
+    public SaveFile(HashMap<String, Paths64> terrain, double terrainScale, ArrayList<SavedGameObject> savedGameObjects, ArrayList<SavedJoint> savedJoints, ArrayList<SavedVehicle> savedVehicles) {
         this.terrain = terrain;
+        this.terrainScale = terrainScale;
         this.savedGameObjects = savedGameObjects;
         this.savedJoints = savedJoints;
         this.savedVehicles = savedVehicles;
@@ -24,15 +31,27 @@ public class SaveFile {
     public SaveFile(DataInputStream stream) throws IOException {
         this.terrain = new HashMap<>();
         int terrainTypesCount = stream.readInt();
+        //older saves store float coordinates and start directly with the type count
+        boolean fixedPoint = terrainTypesCount == FIXED_POINT_TERRAIN;
+        if(fixedPoint){
+            this.terrainScale = stream.readDouble();
+            terrainTypesCount = stream.readInt();
+        } else {
+            this.terrainScale = Terrain.DEFAULT_SCALE;
+        }
         for(int i = 0;i < terrainTypesCount;i++){
             String type = stream.readUTF();
-            ArrayList<ArrayList<Vector2>> terrainType = new ArrayList<>();
+            Paths64 terrainType = new Paths64();
             int pathsCount = stream.readInt();
             for(int j = 0;j < pathsCount;j++){
-                ArrayList<Vector2> path = new ArrayList<>();
                 int pathLength = stream.readInt();
+                Path64 path = new Path64(pathLength);
                 for(int k = 0;k < pathLength;k++){
-                    path.add(new Vector2(stream.readFloat(), stream.readFloat()));
+                    if(fixedPoint){
+                        path.add(new Point64(stream.readLong(), stream.readLong()));
+                    } else {
+                        path.add(new Point64(Math.round(stream.readFloat() * terrainScale), Math.round(stream.readFloat() * terrainScale)));
+                    }
                 }
                 terrainType.add(path);
             }
@@ -55,15 +74,17 @@ public class SaveFile {
         }
     }
     public void toStream(DataOutputStream stream) throws IOException {
+        stream.writeInt(FIXED_POINT_TERRAIN);
+        stream.writeDouble(terrainScale);
         stream.writeInt(terrain.size());
-        for(Map.Entry<String, ArrayList<ArrayList<Vector2>>> entry : terrain.entrySet()){
+        for(Map.Entry<String, Paths64> entry : terrain.entrySet()){
             stream.writeUTF(entry.getKey());
             stream.writeInt(entry.getValue().size());
-            for(ArrayList<Vector2> path : entry.getValue()){
+            for(Path64 path : entry.getValue()){
                 stream.writeInt(path.size());
-                for(Vector2 point : path){
-                    stream.writeFloat(point.x);
-                    stream.writeFloat(point.y);
+                for(Point64 point : path){
+                    stream.writeLong(point.x);
+                    stream.writeLong(point.y);
                 }
             }
         }
@@ -1,8 +1,5 @@
 package com.github.industrialcraft.scrapbox.server;
 
-import clipper2.core.PathD;
-import clipper2.core.PathsD;
-import clipper2.core.PointD;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.box2d.*;
@@ -12,15 +9,19 @@ import com.github.industrialcraft.netx.LANBroadcaster;
 import com.github.industrialcraft.netx.NetXServer;
 import com.github.industrialcraft.netx.ServerMessage;
 import com.github.industrialcraft.netx.SocketUser;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
 import com.github.industrialcraft.scrapbox.common.net.MessageRegistryCreator;
+import com.github.industrialcraft.scrapbox.common.net.SerializedMessage;
+import com.github.industrialcraft.scrapbox.common.net.nio.NioConnection;
+import com.github.industrialcraft.scrapbox.common.net.nio.NioTransport;
 import com.github.industrialcraft.scrapbox.server.game.*;
 import com.github.industrialcraft.scrapbox.common.net.LocalConnection;
 
 import java.io.*;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketException;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static com.github.industrialcraft.scrapbox.server.GameObject.HALF_PI;
 
@@ -33,7 +34,12 @@ public class Server {
     public final World physics;
     public final Terrain terrain;
     public final ClientWorldManager clientWorldManager;
+    public final ConnectionEdgeIndex connectionEdgeIndex;
+    public final Transport transport;
     public final NetXServer networkServer;
+    public final NioTransport nioTransport;
+    public final MessageCodec messageCodec;
+    public final UdpChannel udpChannel;
     private boolean stopped;
     public boolean paused;
     public boolean singleStep;
@@ -43,6 +49,9 @@ public class Server {
     public final File saveFile;
     public final ArrayList<Vector3> scheduledExplosions;
     public Server(int port, File saveFile) {
+        this(port, saveFile, Transport.fromProperty());
+    }
+    public Server(int port, File saveFile, Transport transport) {
         this.saveFile = saveFile;
         this.uuid = UUID.randomUUID();
         this.players = new ArrayList<>();
@@ -54,8 +63,29 @@ public class Server {
         this.gameObjects = new HashMap<>();
         this.newGameObjects = new ArrayList<>();
         this.clientWorldManager = new ClientWorldManager(this);
-        this.networkServer = new NetXServer(port, MessageRegistryCreator.create());
-        this.networkServer.start();
+        this.connectionEdgeIndex = new ConnectionEdgeIndex();
+        this.messageCodec = MessageRegistryCreator.createCodec();
+        this.transport = transport;
+        if(transport == Transport.NIO){
+            this.networkServer = null;
+            try {
+                this.nioTransport = new NioTransport(this.messageCodec);
+                this.nioTransport.listen(port);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            this.nioTransport = null;
+            this.networkServer = new NetXServer(port, this.messageCodec.createRegistry());
+            this.networkServer.start();
+        }
+        UdpChannel udpChannel = null;
+        try {
+            udpChannel = new UdpChannel(0);
+        } catch (SocketException e) {
+            System.out.println("udp channel disabled: " + e.getLocalizedMessage());
+        }
+        this.udpChannel = udpChannel;
         this.stopped = false;
         this.tickCount = 0;
         this.runningTickCount = 0;
@@ -94,10 +124,9 @@ public class Server {
     }
 
     public LocalConnection joinLocalPlayer(){
-        ConcurrentLinkedQueue<Object> write = new ConcurrentLinkedQueue<>();
-        ConcurrentLinkedQueue<Object> read = new ConcurrentLinkedQueue<>();
-        this.addPlayer(new Player(this, new LocalConnection(write, read)));
-        return new LocalConnection(read, write);
+        LocalConnection[] connections = LocalConnection.createPair();
+        this.addPlayer(new Player(this, connections[0]));
+        return connections[1];
     }
     public  <T extends GameObject> T spawnGameObject(Vector2 position, float rotation, GameObject.GameObjectSpawner<T> spawner, UUID uuid){
         T gameObject = spawner.spawn(position, rotation, this);
@@ -178,6 +207,7 @@ public class Server {
     private void tick(float deltaTime) {
         for(GameObject gameObject : this.newGameObjects){
             this.gameObjects.put(gameObject.getId(), gameObject);
+            this.connectionEdgeIndex.markDirty(gameObject);
         }
         this.newGameObjects.clear();
         this.gameObjects.entrySet().removeIf(entry -> {
@@ -189,6 +219,7 @@ public class Server {
             }
         });
         terrain.rebuildIfNeeded();
+        this.connectionEdgeIndex.update();
         boolean runTick = (!paused) || singleStep;
         for(GameObject gameObject : this.gameObjects.values()){
             if(runTick || gameObject instanceof Player)
@@ -218,33 +249,42 @@ public class Server {
         this.scheduledExplosions.clear();
         this.clientWorldManager.updatePositions();
         this.players.removeIf(Player::isDisconnected);
-        while(this.networkServer.visitMessage(new ServerMessage.Visitor() {
-            @Override
-            public void connect(SocketUser user) {
-                Player player = new Player(Server.this, new ServerNetXConnection(user));
-                addPlayer(player);
-                user.setUserData(player);
-            }
-            @Override
-            public void disconnect(SocketUser user) {
-                ((Player)user.getUserData()).disconnect();
+        if(this.networkServer != null){
+            visitNetXMessages();
+        }
+        if(this.nioTransport != null){
+            NioConnection connection = this.nioTransport.pollAccepted();
+            while(connection != null){
+                addPlayer(new Player(this, new ServerNioConnection(connection, messageCodec, udpChannel)));
+                connection = this.nioTransport.pollAccepted();
             }
-            @Override
-            public void message(SocketUser user, Object msg) {
-                ((ServerNetXConnection)((Player)user.getUserData()).connection).queue.add(msg);
+            for(Player player : this.players){
+                //the local player has no socket to lose
+                if(player.connection instanceof ServerNioConnection && ((ServerNioConnection) player.connection).isClosed()){
+                    player.disconnect();
+                    player.connection.close();
+                }
             }
-        }));
+        }
+        for(Player player : this.players){
+            player.connection.flush();
+        }
         if(tickCount%20==1){
-            InetSocketAddress address = networkServer.getAddress();
+            InetSocketAddress address = this.networkServer != null ? this.networkServer.getAddress() : this.nioTransport.getAddress();
             if(address != null) {
                 JsonValue json = new JsonValue(JsonValue.ValueType.object);
                 json.addChild("id", new JsonValue(uuid.toString()));
                 json.addChild("port", new JsonValue(address.getPort()));
+                json.addChild("transport", new JsonValue(transport.name().toLowerCase(Locale.ROOT)));
                 try {
                     LANBroadcaster.broadcast(json.toJson(JsonWriter.OutputType.json), InetAddress.getByName("230.1.2.3"), 4321);
                 } catch (Exception ignored){}
             }
         }
+        int terrainCompactionAfterTicks = 20*30;
+        if(tickCount%terrainCompactionAfterTicks==terrainCompactionAfterTicks-1){
+            this.terrain.scheduleCompaction();
+        }
         int autoSaveAfterTicks = 20*60;
         if(tickCount%autoSaveAfterTicks==autoSaveAfterTicks-1){
             try {
@@ -257,19 +297,30 @@ public class Server {
             }
         }
     }
-    public SaveFile dumpToSaveFile(){
-        SaveFile saveFile = new SaveFile(new HashMap<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
-        this.terrain.terrain.forEach((s, pathDS) -> {
-            ArrayList<ArrayList<Vector2>> paths = new ArrayList<>();
-            for(PathD path : pathDS){
-                ArrayList<Vector2> realPath = new ArrayList<>();
-                for(PointD pointD : path){
-                    realPath.add(new Vector2((float) pointD.x, (float) pointD.y));
+    private void visitNetXMessages(){
+        while(this.networkServer.visitMessage(new ServerMessage.Visitor() {
+            @Override
+            public void connect(SocketUser user) {
+                Player player = new Player(Server.this, new ServerNetXConnection(user, messageCodec, udpChannel));
+                addPlayer(player);
+                user.setUserData(player);
+            }
+            @Override
+            public void disconnect(SocketUser user) {
+                ((Player)user.getUserData()).disconnect();
+                ((ServerNetXConnection)((Player)user.getUserData()).connection).closeUdp();
+            }
+            @Override
+            public void message(SocketUser user, Object msg) {
+                if(!((ServerNetXConnection)((Player)user.getUserData()).connection).receive(msg)){
+                    //more than a client can legitimately send in a tick
+                    user.disconnect();
                 }
-                paths.add(realPath);
             }
-            saveFile.terrain.put(s, paths);
-        });
+        }));
+    }
+    public SaveFile dumpToSaveFile(){
+        SaveFile saveFile = new SaveFile(this.terrain.getTerrainPaths(), this.terrain.getScale(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
         this.gameObjects.values().forEach(gameObject -> {
             if(gameObject.getType() != null) {
                 if (gameObject == gameObject.vehicle.gameObjects.get(0)) {
@@ -291,6 +342,18 @@ public class Server {
         });
         return saveFile;
     }
+    public SerializedMessage serialize(Object message){
+        return new SerializedMessage(this.messageCodec, message);
+    }
+    /**
+     * Sends the message to every player, encoding it only once.
+     */
+    public void broadcast(Object message){
+        SerializedMessage serializedMessage = serialize(message);
+        for(Player player : this.players){
+            player.send(serializedMessage);
+        }
+    }
     public void createExplosion(Vector2 position, float strength){
         this.scheduledExplosions.add(new Vector3(position.x, position.y, strength));
     }
@@ -311,18 +374,7 @@ public class Server {
             GameObject second = getGameObjectByUUID(joint.second);
             joinGameObject(first, joint.firstName, second, joint.secondName);
         }
-        this.terrain.terrain.clear();
-        for(Map.Entry<String, ArrayList<ArrayList<Vector2>>> entry : saveFile.terrain.entrySet()){
-            PathsD paths = new PathsD();
-            for(ArrayList<Vector2> pathsReal : entry.getValue()){
-                PathD path = new PathD();
-                for(Vector2 point : pathsReal){
-                    path.add(new PointD(point.x, point.y));
-                }
-                paths.add(path);
-            }
-            this.terrain.terrain.put(entry.getKey(), paths);
-        }
+        this.terrain.loadTerrain(saveFile.terrain, saveFile.terrainScale);
         data.forEach((uuid1, bytes) -> {
             try {
                 getGameObjectByUUID(uuid1).load(new DataInputStream(new ByteArrayInputStream(bytes)));
@@ -384,16 +436,50 @@ public class Server {
         if(stopped)
             return;
         this.stopped = true;
-        this.networkServer.close();
-        this.physics.dispose();
-        try {
-            if(saveFile != null) {
-                FileOutputStream stream = new FileOutputStream(saveFile);
-                dumpToSaveFile().toStream(new DataOutputStream(stream));
-                stream.close();
+        if(this.networkServer != null){
+            this.networkServer.close();
+        }
+        if(this.nioTransport != null){
+            this.nioTransport.close();
+        }
+        if(this.udpChannel != null){
+            this.udpChannel.close();
+        }
+        synchronized (physics) {
+            //queued edits and compactions have to land before the save, and the save needs the bodies alive
+            try {
+                this.terrain.finishPendingWork();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            try {
+                if(saveFile != null) {
+                    FileOutputStream stream = new FileOutputStream(saveFile);
+                    dumpToSaveFile().toStream(new DataOutputStream(stream));
+                    stream.close();
+                }
+            } catch(IOException exception){
+                System.out.println("couldn't save");
+            }
+            this.terrain.dispose();
+            this.physics.dispose();
+        }
+    }
+    /**
+     * Network library the server accepts players with, picked by the {@code scrapbox.transport} system property
+     * ({@code netx} or {@code nio}) unless given explicitly. Clients find out from the LAN broadcast.
+     */
+    public enum Transport{
+        NETX,
+        NIO;
+        public static Transport fromProperty(){
+            String name = System.getProperty("scrapbox.transport", "netx");
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.out.println("unknown transport " + name + ", using netx");
+                return NETX;
             }
-        } catch(IOException exception){
-            System.out.println("couldn't save");
         }
     }
 }
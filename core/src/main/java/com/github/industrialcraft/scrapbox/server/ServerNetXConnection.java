@@ -2,29 +2,137 @@ package com.github.industrialcraft.scrapbox.server;
 
 import com.github.industrialcraft.netx.SocketUser;
 import com.github.industrialcraft.scrapbox.common.net.IConnection;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.SerializedMessage;
+import com.github.industrialcraft.scrapbox.common.net.SpscRingBuffer;
+import com.github.industrialcraft.scrapbox.common.net.msg.MessageBatch;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Gathers everything sent during a tick into {@link MessageBatch}es, sent and flushed together in {@link #flush()}.
+ * A batch is cut early once it would grow past {@link #MAX_BATCH_SIZE}.
+ */
 public class ServerNetXConnection implements IConnection {
+    public static final int MAX_BATCH_SIZE = 32 * 1024;
+    public static final int RECEIVE_CAPACITY = 4096;
+
     public final SocketUser socket;
-    public final ConcurrentLinkedQueue<Object> queue;
-    public ServerNetXConnection(SocketUser socket) {
+    private final SpscRingBuffer<Object> queue;
+    private final MessageCodec codec;
+    private final ByteArrayOutputStream batch;
+    private final DataOutputStream batchStream;
+    private int batchCount;
+    //last batch framed but not handed to NetX yet, NetX only flushes with a send, so whatever goes out last in a
+    //tick has to be the one sent with flush
+    private MessageBatch unflushed;
+    private final UdpChannel.Endpoint udpEndpoint;
+    private final ArrayList<Object> readList;
+    public ServerNetXConnection(SocketUser socket, MessageCodec codec, UdpChannel udpChannel) {
         this.socket = socket;
-        this.queue = new ConcurrentLinkedQueue<>();
+        this.queue = new SpscRingBuffer<>(RECEIVE_CAPACITY);
+        this.codec = codec;
+        this.batch = new ByteArrayOutputStream();
+        this.batchStream = new DataOutputStream(batch);
+        this.batchCount = 0;
+        this.unflushed = null;
+        this.readList = new ArrayList<>();
+        this.udpEndpoint = udpChannel == null ? null : udpChannel.new Endpoint();
+        if(this.udpEndpoint != null){
+            send(this.udpEndpoint.createInfo());
+        }
+    }
+    @Override
+    public void sendUnreliable(Object message) {
+        if(this.udpEndpoint == null || !this.udpEndpoint.send(this.codec, message)){
+            send(message);
+        }
+    }
+    @Override
+    public void close() {
+        this.socket.disconnect();
+        closeUdp();
+    }
+    public void closeUdp(){
+        if(this.udpEndpoint != null){
+            this.udpEndpoint.forget();
+        }
     }
     @Override
     public void send(Object message) {
-        this.socket.send(message, true);
+        int previousSize = this.batch.size();
+        try {
+            this.codec.write(this.batchStream, message);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        appended(previousSize);
     }
     @Override
-    public ArrayList<Object> read() {
-        ArrayList<Object> messages = new ArrayList<>();
-        Object message = this.queue.poll();
-        while(message != null){
-            messages.add(message);
-            message = this.queue.poll();
+    public void send(SerializedMessage message) {
+        byte[] data = message.getData();
+        if(data.length > MAX_BATCH_SIZE){
+            //large broadcasts like the terrain shape are framed straight from the shared bytes, without copying
+            if(this.batchCount > 0){
+                sendBatch();
+            }
+            sendFramed(new MessageBatch(1, data, data.length));
+            return;
+        }
+        int previousSize = this.batch.size();
+        this.batch.write(data, 0, data.length);
+        appended(previousSize);
+    }
+    private void appended(int previousSize){
+        this.batchCount++;
+        if(this.batch.size() <= MAX_BATCH_SIZE){
+            return;
         }
-        return messages;
+        if(previousSize == 0){
+            //a single oversized message gets a batch of its own
+            sendBatch();
+            return;
+        }
+        byte[] data = this.batch.toByteArray();
+        sendFramed(new MessageBatch(this.batchCount - 1, data, previousSize));
+        this.batch.reset();
+        this.batch.write(data, previousSize, data.length - previousSize);
+        this.batchCount = 1;
+    }
+    private void sendBatch(){
+        sendFramed(new MessageBatch(this.batchCount, this.batch.toByteArray(), this.batch.size()));
+        this.batch.reset();
+        this.batchCount = 0;
+    }
+    private void sendFramed(MessageBatch messageBatch){
+        if(this.unflushed != null){
+            this.socket.send(this.unflushed, false);
+        }
+        this.unflushed = messageBatch;
+    }
+    @Override
+    public void flush() {
+        if(this.batchCount > 0){
+            sendBatch();
+        }
+        if(this.unflushed != null){
+            this.socket.send(this.unflushed, true);
+            this.unflushed = null;
+        }
+    }
+    /**
+     * @return false if the message did not fit, the client is sending faster than the server reads
+     */
+    public boolean receive(Object message){
+        return this.queue.offer(message);
+    }
+    @Override
+    public ArrayList<Object> read() {
+        this.readList.clear();
+        this.queue.drainTo(this.readList);
+        return this.readList;
     }
 }
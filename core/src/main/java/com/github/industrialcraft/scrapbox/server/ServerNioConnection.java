@@ -0,0 +1,62 @@
+package com.github.industrialcraft.scrapbox.server;
+
+import com.github.industrialcraft.scrapbox.common.net.IConnection;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.SerializedMessage;
+import com.github.industrialcraft.scrapbox.common.net.nio.NioConnection;
+
+import java.util.ArrayList;
+
+/**
+ * Player connection over the NIO transport. Frames already go out once per tick in {@link #flush()}, so unlike
+ * {@link ServerNetXConnection} nothing is wrapped in batches.
+ */
+public class ServerNioConnection implements IConnection {
+    public final NioConnection connection;
+    private final MessageCodec codec;
+    private final UdpChannel.Endpoint udpEndpoint;
+    public ServerNioConnection(NioConnection connection, MessageCodec codec, UdpChannel udpChannel) {
+        this.connection = connection;
+        this.codec = codec;
+        this.udpEndpoint = udpChannel == null ? null : udpChannel.new Endpoint();
+        if(this.udpEndpoint != null){
+            send(this.udpEndpoint.createInfo());
+        }
+    }
+    @Override
+    public void send(Object message) {
+        this.connection.send(message);
+    }
+    @Override
+    public void send(SerializedMessage message) {
+        this.connection.send(message);
+    }
+    @Override
+    public void sendUnreliable(Object message) {
+        if(this.udpEndpoint == null || !this.udpEndpoint.send(this.codec, message)){
+            send(message);
+        }
+    }
+    @Override
+    public void flush() {
+        this.connection.flush();
+    }
+    @Override
+    public ArrayList<Object> read() {
+        return this.connection.read();
+    }
+    @Override
+    public int getQueueDepth() {
+        return this.connection.getQueueDepth();
+    }
+    public boolean isClosed(){
+        return this.connection.isClosed();
+    }
+    @Override
+    public void close() {
+        this.connection.close();
+        if(this.udpEndpoint != null){
+            this.udpEndpoint.forget();
+        }
+    }
+}
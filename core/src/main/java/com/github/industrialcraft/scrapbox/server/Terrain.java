@@ -4,33 +4,87 @@ import clipper2.Clipper;
 import clipper2.core.*;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
+import com.github.industrialcraft.scrapbox.common.net.SerializedMessage;
 import com.github.industrialcraft.scrapbox.common.net.msg.PlaceTerrain;
+import com.github.industrialcraft.scrapbox.common.net.msg.TerrainChunkUpdateMessage;
 import com.github.industrialcraft.scrapbox.common.net.msg.TerrainShapeMessage;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 public class Terrain {
+    public static final float CHUNK_SIZE = 8;
+    public static final double CIRCLE_TOLERANCE = 0.01;
+    public static final int MIN_CIRCLE_STEPS = 8;
+    public static final int MAX_CIRCLE_STEPS = 64;
+    public static final double DEFAULT_SCALE = 1000;
+    public static final int DEFAULT_VERTEX_BUDGET = 20000;
+
     public final Server server;
     public final Body body;
-    public HashMap<String,PathsD> terrain;
+    private final HashMap<TerrainChunk.ChunkPosition, TerrainChunk> chunks;
     private final HashMap<String, TerrainType> terrainTypes;
-    private boolean dirty;
+    private final ArrayList<TerrainGeometry.TerrainEdit> pendingEdits;
+    private final TerrainGeometry geometry;
+    private final ExecutorService worker;
+    private final ConcurrentLinkedQueue<TerrainGeometry.TerrainUpdate> completedUpdates;
+    //set by the worker when it could not even resync, thrown on the tick thread
+    private volatile RuntimeException failure;
+    private int version;
+    //per terrain type, set with the scrapbox.terrainVertexBudget system property
+    public final int vertexBudget;
+    private HashMap<String,Integer> vertexCounts;
+    /**
+     * Uses the fixed-point scale from the scrapbox.terrainScale system property. Saves remember their scale and are
+     * converted on load, so it can be changed between runs.
+     */
     public Terrain(Server server) {
+        this(server, scaleFromProperty());
+    }
+    public Terrain(Server server, double scale) {
         this.server = server;
         this.body = server.physics.createBody(new BodyDef());
-        this.terrain = new HashMap<>();
+        this.chunks = new HashMap<>();
         this.terrainTypes = new HashMap<>();
-        this.dirty = true;
-    }
-    private PathsD getTerrainType(String terrainType){
-        return this.terrain.getOrDefault(terrainType, new PathsD());
+        this.pendingEdits = new ArrayList<>();
+        this.geometry = new TerrainGeometry(scale);
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "terrain worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.completedUpdates = new ConcurrentLinkedQueue<>();
+        this.failure = null;
+        this.version = 0;
+        this.vertexBudget = vertexBudgetFromProperty();
+        this.vertexCounts = new HashMap<>();
     }
 
     public void placeFromMessage(PlaceTerrain placeTerrain){
         place(placeTerrain.type, placeTerrain.position, placeTerrain.radius, placeTerrain.rectangle);
     }
     public void place(String type, Vector2 point, float radius, boolean rectangle){
+        this.pendingEdits.add(new TerrainGeometry.TerrainEdit(type, createStamp(point, radius, rectangle)));
+    }
+    /**
+     * Places the union of all stamps of the stroke, as one edit per outline so chunks clip it once.
+     */
+    public void placeStroke(InputFilter.TerrainStroke stroke){
+        if(stroke.positions.size() == 1){
+            place(stroke.type, stroke.positions.get(0), stroke.radius, stroke.rectangle);
+            return;
+        }
+        PathsD stamps = new PathsD(stroke.positions.size());
+        for(Vector2 position : stroke.positions){
+            stamps.add(createStamp(position, stroke.radius, stroke.rectangle));
+        }
+        //holes come out reversed and stay holes, as edits of one type are clipped together
+        for(PathD shape : Clipper.Union(stamps, FillRule.Positive)){
+            this.pendingEdits.add(new TerrainGeometry.TerrainEdit(stroke.type, shape));
+        }
+    }
+    private static PathD createStamp(Vector2 point, float radius, boolean rectangle){
         PathD shape;
         if(rectangle){
             radius /= 2;
@@ -40,116 +94,226 @@ public class Terrain {
             shape.add(new PointD(point.x+radius, point.y+radius));
             shape.add(new PointD(point.x-radius, point.y+radius));
         } else {
-            shape = Clipper.Ellipse(new PointD(point.x, point.y), radius, radius, 20);
+            shape = Clipper.Ellipse(new PointD(point.x, point.y), radius, radius, getCircleSteps(radius));
         }
-        if(type.isEmpty()) {
-            this.terrain.replaceAll((k, v) -> Clipper.Difference(this.terrain.get(k), new PathsD(Collections.singletonList(shape)), FillRule.Positive));
-        } else {
-            PathsD currentTerrain = getTerrainType(type);
-            currentTerrain.add(shape);
-            currentTerrain = Clipper.Union(currentTerrain, FillRule.Positive);
-            currentTerrain = Clipper.SimplifyPaths(currentTerrain, 0.03);
-            for(Map.Entry<String, PathsD> e : this.terrain.entrySet()){
-                if(!e.getKey().equals(type)){
-                    currentTerrain = Clipper.Difference(currentTerrain, e.getValue(), FillRule.Positive);
+        return shape;
+    }
+    public static int getCircleSteps(float radius){
+        if(radius <= CIRCLE_TOLERANCE){
+            return MIN_CIRCLE_STEPS;
+        }
+        int steps = (int) Math.ceil(Math.PI / Math.acos(1 - CIRCLE_TOLERANCE / radius));
+        return Math.max(MIN_CIRCLE_STEPS, Math.min(steps, MAX_CIRCLE_STEPS));
+    }
+    public void scheduleCompaction(){
+        submit(() -> geometry.compact(this.vertexBudget));
+    }
+    public HashMap<String,Integer> getVertexCounts(){
+        return new HashMap<>(this.vertexCounts);
+    }
+    private Future<?> submit(Supplier<TerrainGeometry.TerrainUpdate> job){
+        return this.worker.submit(() -> {
+            try {
+                this.completedUpdates.add(job.get());
+            } catch (RuntimeException e){
+                //how much of the job got applied is unknown, a full resync puts the tick thread and clients back in
+                //line with whatever the geometry now holds
+                System.out.println("terrain job failed, resyncing: " + e);
+                try {
+                    this.completedUpdates.add(geometry.resync());
+                } catch (RuntimeException resyncException){
+                    resyncException.addSuppressed(e);
+                    this.failure = resyncException;
                 }
             }
-            this.terrain.put(type, currentTerrain);
+        });
+    }
+    private static double scaleFromProperty(){
+        String scale = System.getProperty("scrapbox.terrainScale", Double.toString(DEFAULT_SCALE));
+        try {
+            double value = Double.parseDouble(scale);
+            if(value > 0){
+                return value;
+            }
+        } catch (NumberFormatException ignored){}
+        System.out.println("invalid terrain scale " + scale + ", using " + DEFAULT_SCALE);
+        return DEFAULT_SCALE;
+    }
+    private static int vertexBudgetFromProperty(){
+        String budget = System.getProperty("scrapbox.terrainVertexBudget", Integer.toString(DEFAULT_VERTEX_BUDGET));
+        try {
+            return Integer.parseInt(budget);
+        } catch (NumberFormatException e) {
+            System.out.println("invalid terrain vertex budget " + budget + ", using " + DEFAULT_VERTEX_BUDGET);
+            return DEFAULT_VERTEX_BUDGET;
         }
-        dirty = true;
     }
-    public void rebuildIfNeeded(){
-        if(!dirty){
-            return;
+    public double getScale(){
+        return this.geometry.scale;
+    }
+    public HashMap<String,Paths64> getTerrainPaths(){
+        HashMap<String,Paths64> pieces = new HashMap<>();
+        for(TerrainChunk chunk : this.chunks.values()){
+            for(Map.Entry<String, Paths64> e : chunk.terrain.entrySet()){
+                pieces.computeIfAbsent(e.getKey(), k -> new Paths64()).addAll(e.getValue());
+            }
+        }
+        HashMap<String,Paths64> terrain = new HashMap<>();
+        pieces.forEach((type, paths) -> terrain.put(type, Clipper.Union(paths, FillRule.Positive)));
+        return terrain;
+    }
+    public void loadTerrain(HashMap<String,Paths64> terrain, double scale){
+        this.pendingEdits.clear();
+        if(scale != getScale()){
+            double factor = getScale() / scale;
+            for(Paths64 paths : terrain.values()){
+                for(Path64 path : paths){
+                    for(Point64 point : path){
+                        point.x = Math.round(point.x * factor);
+                        point.y = Math.round(point.y * factor);
+                    }
+                }
+            }
         }
-        dirty = false;
-        ArrayList<Fixture> fixtures = new ArrayList<>();
-        for(Fixture fixture : this.body.getFixtureList()){
-            fixtures.add(fixture);
+        try {
+            submit(() -> geometry.load(terrain)).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
         }
-        for(Fixture fixture : fixtures){
+    }
+    private void destroyFixtures(TerrainChunk chunk){
+        for(Fixture fixture : chunk.fixtures.values()){
             this.body.destroyFixture(fixture);
         }
-
-        TerrainShapeMessage terrainShapeMessage = this.createMessage();
-        for(Player player : server.players){
-            player.send(terrainShapeMessage);
-        }
-        for(Map.Entry<String, PathsD> type : this.terrain.entrySet()){
-            for(PathD path : type.getValue()) {
-                ChainShape shape = new ChainShape();
-                ArrayList<Vector2> pathVec = new ArrayList<>();
-                float[] points = new float[path.size() * 2];
-                for (int i = 0; i < path.size(); i++) {
-                    pathVec.add(new Vector2((float) path.get(i).x, (float) path.get(i).y));
-                    points[i * 2] = (float) path.get(i).x;
-                    points[(i * 2) + 1] = (float) path.get(i).y;
-                }
-                shape.createLoop(points);
-                FixtureDef fixtureDef = new FixtureDef();
-                fixtureDef.shape = shape;
-                TerrainType terrainType = this.terrainTypes.get(type.getKey());
-                fixtureDef.friction = terrainType.friction;
-                fixtureDef.restitution = terrainType.restitution;
-                body.createFixture(fixtureDef);
+        chunk.fixtures.clear();
+    }
+    private void updateFixtures(TerrainChunk chunk, ArrayList<TerrainChunk.ChainSegment> segments){
+        HashSet<TerrainChunk.ChainSegment> newSegments = new HashSet<>(segments);
+        Iterator<Map.Entry<TerrainChunk.ChainSegment, Fixture>> iterator = chunk.fixtures.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<TerrainChunk.ChainSegment, Fixture> entry = iterator.next();
+            if(!newSegments.contains(entry.getKey())){
+                this.body.destroyFixture(entry.getValue());
+                iterator.remove();
             }
         }
+        for(TerrainChunk.ChainSegment segment : newSegments){
+            if(chunk.fixtures.containsKey(segment)){
+                continue;
+            }
+            TerrainType terrainType = this.terrainTypes.get(segment.type);
+            ChainShape shape = new ChainShape();
+            shape.createChain(segment.points);
+            shape.setPrevVertex(segment.prevX, segment.prevY);
+            shape.setNextVertex(segment.nextX, segment.nextY);
+            FixtureDef fixtureDef = new FixtureDef();
+            fixtureDef.shape = shape;
+            fixtureDef.friction = terrainType.friction;
+            fixtureDef.restitution = terrainType.restitution;
+            chunk.fixtures.put(segment, body.createFixture(fixtureDef));
+            shape.dispose();
+        }
     }
-    public TerrainShapeMessage createMessage(){
-        HashMap<String,ArrayList<TerrainShapeMessage.TerrainData>> terrain = new HashMap<>();
-        for(Map.Entry<String, PathsD> e : this.terrain.entrySet()){
-            ArrayList<TerrainShapeMessage.TerrainData> terrainDatas = new ArrayList<>();
-            HashMap<RectD,PathD> holes = new HashMap<>();
-            for(PathD path : e.getValue()) {
-                if(!Clipper.IsPositive(path)){
-                    holes.put(GetBounds(path), Clipper.ReversePath(path));
-                }
+    public void rebuildIfNeeded(){
+        RuntimeException failure = this.failure;
+        if(failure != null){
+            throw new IllegalStateException("terrain worker failed", failure);
+        }
+        if(!this.pendingEdits.isEmpty()){
+            ArrayList<TerrainGeometry.TerrainEdit> edits = new ArrayList<>(this.pendingEdits);
+            this.pendingEdits.clear();
+            submit(() -> geometry.applyEdits(edits));
+        }
+        TerrainGeometry.TerrainUpdate update = this.completedUpdates.poll();
+        while(update != null){
+            publish(update);
+            update = this.completedUpdates.poll();
+        }
+    }
+    private void publish(TerrainGeometry.TerrainUpdate update){
+        if(update.vertexCounts != null){
+            //only compactions and resyncs count, a compaction that changed nothing is not worth a line
+            if(!update.vertexCounts.equals(this.vertexCounts)){
+                System.out.println("terrain vertices: " + update.vertexCounts);
             }
-            for(PathD path : e.getValue()) {
-                if(Clipper.IsPositive(path)){
-                    RectD bounds = GetBounds(path);
-                    PathsD realHoles = new PathsD();
-                    holes.forEach((rectD, pointDS) -> {
-                        if(bounds.Contains(rectD)){
-                            realHoles.add(pointDS);
-                        }
-                    });
-                    Clipper.Union(realHoles, FillRule.Positive);
-                    terrainDatas.add(new TerrainShapeMessage.TerrainData(createTerrainPath(path),new ArrayList<>(realHoles.stream().map(this::createTerrainPath).collect(Collectors.toList()))));
+            this.vertexCounts = update.vertexCounts;
+        }
+        if(update.chunks.isEmpty() && !update.fullResync){
+            return;
+        }
+        if(update.fullResync){
+            Iterator<TerrainChunk> iterator = this.chunks.values().iterator();
+            while(iterator.hasNext()){
+                TerrainChunk chunk = iterator.next();
+                if(!update.chunks.containsKey(chunk.position)){
+                    destroyFixtures(chunk);
+                    iterator.remove();
                 }
             }
-            terrain.put(e.getKey(), terrainDatas);
         }
-        return new TerrainShapeMessage(terrain);
-    }
-    private RectD GetBounds(PathD path) {
-        RectD result = new RectD(false);
-        for (PointD pt : path) {
-            if (pt.x < result.left) {
-                result.left = pt.x;
-            }
-            if (pt.x > result.right) {
-                result.right = pt.x;
+        ArrayList<TerrainShapeMessage.ChunkData> changedChunks = new ArrayList<>();
+        for(Map.Entry<TerrainChunk.ChunkPosition, TerrainGeometry.ChunkUpdate> entry : update.chunks.entrySet()){
+            TerrainGeometry.ChunkUpdate chunkUpdate = entry.getValue();
+            TerrainChunk chunk = this.chunks.get(entry.getKey());
+            changedChunks.add(chunkUpdate.messageData);
+            if(chunkUpdate.isEmpty()){
+                if(chunk != null){
+                    destroyFixtures(chunk);
+                    this.chunks.remove(entry.getKey());
+                }
+                continue;
             }
-            if (pt.y < result.top) {
-                result.top = pt.y;
+            if(chunk == null){
+                chunk = new TerrainChunk(entry.getKey());
+                this.chunks.put(entry.getKey(), chunk);
             }
-            if (pt.y > result.bottom) {
-                result.bottom = pt.y;
+            chunk.terrain.clear();
+            chunk.terrain.putAll(chunkUpdate.terrain);
+            chunk.messageData = chunkUpdate.messageData;
+            updateFixtures(chunk, chunkUpdate.segments);
+        }
+        version++;
+        SerializedMessage message = server.serialize(update.fullResync ? this.createMessage() : new TerrainChunkUpdateMessage(version, changedChunks));
+        for(Player player : server.players){
+            //a player that is behind would only queue more, it gets the whole terrain when it caught up
+            if(player.isBehind()){
+                player.markTerrainStale();
+            } else {
+                player.send(message);
             }
         }
-        return result.left == Double.MAX_VALUE ? new RectD() : result;
     }
-    private TerrainShapeMessage.TerrainPath createTerrainPath(PathD path){
-        ArrayList<Vector2> messagePath = new ArrayList<>();
-        for (PointD point : path) {
-            messagePath.add(new Vector2((float) point.x, (float) point.y));
+    public TerrainShapeMessage createMessage(){
+        ArrayList<TerrainShapeMessage.ChunkData> chunks = new ArrayList<>();
+        for(TerrainChunk chunk : this.chunks.values()){
+            if(chunk.messageData != null){
+                chunks.add(chunk.messageData);
+            }
         }
-        return new TerrainShapeMessage.TerrainPath(messagePath);
+        return new TerrainShapeMessage(version, chunks);
     }
     public void registerTerrainType(String name, TerrainType type){
         this.terrainTypes.put(name, type);
     }
+    /**
+     * Runs the edits still waiting for the next tick, waits for the worker to finish every queued job, like a
+     * scheduled compaction, and publishes the results, so the terrain is complete before the world gets saved.
+     */
+    public void finishPendingWork(){
+        rebuildIfNeeded();
+        this.worker.shutdown();
+        try {
+            if(!this.worker.awaitTermination(10, TimeUnit.SECONDS)){
+                System.out.println("terrain worker did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rebuildIfNeeded();
+    }
+    public void dispose(){
+        this.worker.shutdownNow();
+    }
     public static class TerrainType {
         public final float friction;
         public final float restitution;
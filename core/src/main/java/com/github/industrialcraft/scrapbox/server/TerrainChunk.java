@@ -0,0 +1,90 @@
+package com.github.industrialcraft.scrapbox.server;
+
+import clipper2.core.Path64;
+import clipper2.core.Paths64;
+import clipper2.core.Point64;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.github.industrialcraft.scrapbox.common.net.msg.TerrainShapeMessage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+
+public class TerrainChunk {
+    public final ChunkPosition position;
+    public final HashMap<String,Paths64> terrain;
+    public final HashMap<ChainSegment, Fixture> fixtures;
+    public TerrainShapeMessage.ChunkData messageData;
+    public TerrainChunk(ChunkPosition position) {
+        this.position = position;
+        this.terrain = new HashMap<>();
+        this.fixtures = new HashMap<>();
+        this.messageData = null;
+    }
+    /**
+     * Open chain of a terrain outline, with the neighbouring outline vertices as ghost vertices so bodies slide
+     * smoothly across segment joints.
+     */
+    public static class ChainSegment{
+        public final String type;
+        public final float[] points;
+        public final float prevX;
+        public final float prevY;
+        public final float nextX;
+        public final float nextY;
+        private final int hash;
+        public ChainSegment(String type, float[] points, float prevX, float prevY, float nextX, float nextY) {
+            this.type = type;
+            this.points = points;
+            this.prevX = prevX;
+            this.prevY = prevY;
+            this.nextX = nextX;
+            this.nextY = nextY;
+            this.hash = Objects.hash(type, Arrays.hashCode(points), prevX, prevY, nextX, nextY);
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ChainSegment that = (ChainSegment) o;
+            return hash == that.hash && prevX == that.prevX && prevY == that.prevY && nextX == that.nextX && nextY == that.nextY && type.equals(that.type) && Arrays.equals(points, that.points);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    public static class ChunkPosition{
+        public final int x;
+        public final int y;
+        public ChunkPosition(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+        public static ChunkPosition fromWorld(double x, double y){
+            return new ChunkPosition((int) Math.floor(x / Terrain.CHUNK_SIZE), (int) Math.floor(y / Terrain.CHUNK_SIZE));
+        }
+        public Paths64 createBoundsShape(double scale){
+            long size = Math.round(Terrain.CHUNK_SIZE * scale);
+            Path64 shape = new Path64();
+            shape.add(new Point64(x * size, y * size));
+            shape.add(new Point64((x + 1) * size, y * size));
+            shape.add(new Point64((x + 1) * size, (y + 1) * size));
+            shape.add(new Point64(x * size, (y + 1) * size));
+            Paths64 paths = new Paths64();
+            paths.add(shape);
+            return paths;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ChunkPosition that = (ChunkPosition) o;
+            return x == that.x && y == that.y;
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hash(x, y);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.github.industrialcraft.scrapbox.server;
+
+import clipper2.Clipper;
+import clipper2.core.*;
+import clipper2.engine.Clipper64;
+import clipper2.engine.PolyPath64;
+import clipper2.engine.PolyTree64;
+import com.badlogic.gdx.math.Vector2;
+import com.github.industrialcraft.scrapbox.common.net.msg.TerrainShapeMessage;
+
+import java.util.*;
+
+/**
+ * Owns the authoritative terrain paths. Only ever used from the terrain worker thread, every update it produces
+ * holds its own copies so the tick thread can read them without locking. Paths are stored as integers, one unit
+ * being 1/{@link #scale} of a world unit.
+ */
+public class TerrainGeometry {
+    public static final double SIMPLIFY_EPSILON = 0.03;
+    public static final double MAX_COMPACTION_EPSILON = 0.12;
+    public static final int MIN_SEGMENT_EDGES = 4;
+    public static final int MAX_SEGMENT_EDGES = 16;
+    public static final double MAX_SEGMENT_LENGTH = 3;
+
+    public final double scale;
+    private final HashMap<TerrainChunk.ChunkPosition, HashMap<String,Paths64>> chunks;
+    public TerrainGeometry(double scale) {
+        this.scale = scale;
+        this.chunks = new HashMap<>();
+    }
+    private ArrayList<TerrainChunk.ChunkPosition> getChunksInBounds(RectD bounds, boolean create){
+        TerrainChunk.ChunkPosition min = TerrainChunk.ChunkPosition.fromWorld(bounds.left, bounds.top);
+        TerrainChunk.ChunkPosition max = TerrainChunk.ChunkPosition.fromWorld(bounds.right, bounds.bottom);
+        ArrayList<TerrainChunk.ChunkPosition> chunks = new ArrayList<>();
+        for(int x = min.x;x <= max.x;x++){
+            for(int y = min.y;y <= max.y;y++){
+                TerrainChunk.ChunkPosition position = new TerrainChunk.ChunkPosition(x, y);
+                if(create){
+                    this.chunks.computeIfAbsent(position, p -> new HashMap<>());
+                }
+                if(this.chunks.containsKey(position)){
+                    chunks.add(position);
+                }
+            }
+        }
+        return chunks;
+    }
+    public TerrainUpdate applyEdits(List<TerrainEdit> edits){
+        HashSet<TerrainChunk.ChunkPosition> changed = new HashSet<>();
+        int i = 0;
+        while(i < edits.size()){
+            String type = edits.get(i).type;
+            boolean erase = type.isEmpty();
+            LinkedHashMap<TerrainChunk.ChunkPosition,Paths64> chunkShapes = new LinkedHashMap<>();
+            for(;i < edits.size() && edits.get(i).type.equals(type);i++){
+                Path64 shape = toPath64(edits.get(i).shape);
+                for(TerrainChunk.ChunkPosition chunk : getChunksInBounds(GetBounds(shape), !erase)){
+                    chunkShapes.computeIfAbsent(chunk, c -> new Paths64()).add(shape);
+                }
+            }
+            chunkShapes.forEach((chunk, shapes) -> {
+                if(applyEdit(chunk, type, shapes)){
+                    changed.add(chunk);
+                }
+            });
+        }
+        HashMap<TerrainChunk.ChunkPosition, ChunkUpdate> updates = new HashMap<>();
+        for(TerrainChunk.ChunkPosition position : changed){
+            updates.put(position, createChunkUpdate(position));
+        }
+        this.chunks.values().removeIf(TerrainGeometry::isEmpty);
+        return new TerrainUpdate(false, updates, null);
+    }
+    private boolean applyEdit(TerrainChunk.ChunkPosition position, String type, Paths64 shapes){
+        HashMap<String,Paths64> chunk = this.chunks.get(position);
+        Paths64 chunkShape = Clipper.Intersect(shapes, position.createBoundsShape(scale), FillRule.Positive);
+        if(chunkShape.isEmpty()){
+            return false;
+        }
+        if(type.isEmpty()) {
+            chunk.replaceAll((k, v) -> simplify(Clipper.Difference(v, chunkShape, FillRule.Positive), SIMPLIFY_EPSILON, position));
+        } else {
+            Paths64 currentTerrain = Clipper.Union(chunk.getOrDefault(type, new Paths64()), chunkShape, FillRule.Positive);
+            currentTerrain = simplify(currentTerrain, SIMPLIFY_EPSILON, position);
+            for(Map.Entry<String, Paths64> e : chunk.entrySet()){
+                if(!e.getKey().equals(type)){
+                    currentTerrain = Clipper.Difference(currentTerrain, e.getValue(), FillRule.Positive);
+                }
+            }
+            chunk.put(type, currentTerrain);
+        }
+        return true;
+    }
+    public TerrainUpdate load(HashMap<String,Paths64> terrain){
+        this.chunks.clear();
+        for(Map.Entry<String, Paths64> e : terrain.entrySet()){
+            if(e.getValue().isEmpty()){
+                continue;
+            }
+            for(TerrainChunk.ChunkPosition chunk : getChunksInBounds(GetBounds(e.getValue()), true)){
+                this.chunks.get(chunk).put(e.getKey(), Clipper.Intersect(e.getValue(), chunk.createBoundsShape(scale), FillRule.Positive));
+            }
+        }
+        this.chunks.values().removeIf(TerrainGeometry::isEmpty);
+        return resync();
+    }
+    /**
+     * @return update replacing every chunk with the current geometry
+     */
+    public TerrainUpdate resync(){
+        HashMap<TerrainChunk.ChunkPosition, ChunkUpdate> updates = new HashMap<>();
+        for(TerrainChunk.ChunkPosition position : this.chunks.keySet()){
+            updates.put(position, createChunkUpdate(position));
+        }
+        return new TerrainUpdate(true, updates, countVertices());
+    }
+    /**
+     * Re-simplifies every terrain type whose vertex count is over the budget with a growing tolerance, until it fits
+     * or the tolerance reaches {@link #MAX_COMPACTION_EPSILON}.
+     */
+    public TerrainUpdate compact(int vertexBudget){
+        HashMap<String,Integer> vertexCounts = countVertices();
+        HashSet<TerrainChunk.ChunkPosition> changed = new HashSet<>();
+        for(Map.Entry<String, Integer> type : vertexCounts.entrySet()){
+            int count = type.getValue();
+            double epsilon = SIMPLIFY_EPSILON * 2;
+            while(count > vertexBudget && epsilon <= MAX_COMPACTION_EPSILON){
+                count = 0;
+                for(Map.Entry<TerrainChunk.ChunkPosition, HashMap<String, Paths64>> chunk : this.chunks.entrySet()){
+                    Paths64 paths = chunk.getValue().get(type.getKey());
+                    if(paths == null){
+                        continue;
+                    }
+                    Paths64 simplified = simplify(paths, epsilon, chunk.getKey());
+                    int simplifiedCount = countVertices(simplified);
+                    if(simplifiedCount < countVertices(paths)){
+                        chunk.getValue().put(type.getKey(), simplified);
+                        changed.add(chunk.getKey());
+                    }
+                    count += Math.min(simplifiedCount, countVertices(paths));
+                }
+                epsilon *= 2;
+            }
+            type.setValue(count);
+        }
+        this.chunks.values().removeIf(TerrainGeometry::isEmpty);
+        HashMap<TerrainChunk.ChunkPosition, ChunkUpdate> updates = new HashMap<>();
+        for(TerrainChunk.ChunkPosition position : changed){
+            updates.put(position, createChunkUpdate(position));
+        }
+        return new TerrainUpdate(false, updates, vertexCounts);
+    }
+    private HashMap<String,Integer> countVertices(){
+        HashMap<String,Integer> vertexCounts = new HashMap<>();
+        for(HashMap<String, Paths64> chunk : this.chunks.values()){
+            for(Map.Entry<String, Paths64> e : chunk.entrySet()){
+                vertexCounts.merge(e.getKey(), countVertices(e.getValue()), Integer::sum);
+            }
+        }
+        return vertexCounts;
+    }
+    private static int countVertices(Paths64 paths){
+        int count = 0;
+        for(Path64 path : paths){
+            count += path.size();
+        }
+        return count;
+    }
+    /**
+     * Vertices on the chunk bounds are kept in place, only the stretches between them are simplified. Otherwise
+     * neighbouring chunks would move their shared border vertices apart and open cracks bodies catch on.
+     */
+    private Paths64 simplify(Paths64 paths, double epsilon, TerrainChunk.ChunkPosition position){
+        long size = Math.round(Terrain.CHUNK_SIZE * scale);
+        Paths64 simplified = new Paths64();
+        for(Path64 path : paths){
+            Path64 simplifiedPath = simplify(path, epsilon * scale, position.x * size, position.y * size, (position.x + 1) * size, (position.y + 1) * size);
+            if(simplifiedPath.size() >= 3){
+                simplified.add(simplifiedPath);
+            }
+        }
+        return simplified;
+    }
+    private static Path64 simplify(Path64 path, double epsilon, long minX, long minY, long maxX, long maxY){
+        int size = path.size();
+        int firstPinned = -1;
+        for(int i = 0;i < size;i++){
+            Point64 point = path.get(i);
+            if(point.x == minX || point.x == maxX || point.y == minY || point.y == maxY){
+                firstPinned = i;
+                break;
+            }
+        }
+        if(firstPinned == -1){
+            return Clipper.SimplifyPath(path, epsilon, true);
+        }
+        Path64 result = new Path64(size);
+        Path64 run = new Path64();
+        run.add(path.get(firstPinned));
+        for(int i = 1;i <= size;i++){
+            Point64 point = path.get((firstPinned + i) % size);
+            run.add(point);
+            if(point.x == minX || point.x == maxX || point.y == minY || point.y == maxY){
+                //open runs keep both of their ends
+                Path64 simplifiedRun = run.size() > 2 ? Clipper.SimplifyPath(run, epsilon, false) : run;
+                for(int j = 0;j < simplifiedRun.size() - 1;j++){
+                    result.add(simplifiedRun.get(j));
+                }
+                run = new Path64();
+                run.add(point);
+            }
+        }
+        return result;
+    }
+    private static boolean isEmpty(HashMap<String,Paths64> chunk){
+        for(Paths64 paths : chunk.values()){
+            if(!paths.isEmpty()){
+                return false;
+            }
+        }
+        return true;
+    }
+    private ChunkUpdate createChunkUpdate(TerrainChunk.ChunkPosition position){
+        HashMap<String,Paths64> terrain = new HashMap<>();
+        ArrayList<TerrainChunk.ChainSegment> segments = new ArrayList<>();
+        HashMap<String,ArrayList<TerrainShapeMessage.TerrainData>> messageTerrain = new HashMap<>();
+        HashMap<String,Paths64> chunk = this.chunks.get(position);
+        if(chunk != null && !isEmpty(chunk)) {
+            for (Map.Entry<String, Paths64> e : chunk.entrySet()) {
+                if(e.getValue().isEmpty()){
+                    continue;
+                }
+                terrain.put(e.getKey(), e.getValue());
+                for (Path64 path : e.getValue()) {
+                    addChainSegments(e.getKey(), path, segments);
+                }
+                messageTerrain.put(e.getKey(), createTerrainData(e.getValue()));
+            }
+        }
+        return new ChunkUpdate(terrain, segments, new TerrainShapeMessage.ChunkData(position.x, position.y, messageTerrain));
+    }
+    /**
+     * Cuts a closed outline into open chains. Cuts are placed at vertices picked from their own coordinates, so an
+     * edit only changes the segments around it and the rest keep their fixtures and contacts.
+     */
+    private void addChainSegments(String type, Path64 path, ArrayList<TerrainChunk.ChainSegment> segments){
+        int size = path.size();
+        if(size < 3){
+            return;
+        }
+        int start = 0;
+        for(int i = 0;i < size;i++){
+            if(isAnchor(path.get(i))){
+                start = i;
+                break;
+            }
+            if(comparePoints(path.get(i), path.get(start)) < 0){
+                start = i;
+            }
+        }
+        int segmentStart = 0;
+        double length = 0;
+        for(int i = 1;i <= size;i++){
+            Point64 previous = path.get((start + i - 1) % size);
+            Point64 point = path.get((start + i) % size);
+            length += Math.hypot(point.x - previous.x, point.y - previous.y) / scale;
+            int edges = i - segmentStart;
+            boolean cut = i == size || edges >= MAX_SEGMENT_EDGES || length >= MAX_SEGMENT_LENGTH || (edges >= MIN_SEGMENT_EDGES && isAnchor(point));
+            if(cut){
+                float[] points = new float[(edges + 1) * 2];
+                for(int j = 0;j <= edges;j++){
+                    Point64 segmentPoint = path.get((start + segmentStart + j) % size);
+                    points[j * 2] = (float) (segmentPoint.x / scale);
+                    points[(j * 2) + 1] = (float) (segmentPoint.y / scale);
+                }
+                Point64 prev = path.get((start + segmentStart - 1 + size) % size);
+                Point64 next = path.get((start + i + 1) % size);
+                segments.add(new TerrainChunk.ChainSegment(type, points, (float) (prev.x / scale), (float) (prev.y / scale), (float) (next.x / scale), (float) (next.y / scale)));
+                segmentStart = i;
+                length = 0;
+            }
+        }
+    }
+    private static boolean isAnchor(Point64 point){
+        long hash = point.x * 31 + point.y;
+        return (hash & 7) == 0;
+    }
+    private static int comparePoints(Point64 a, Point64 b){
+        return a.x != b.x ? Long.compare(a.x, b.x) : Long.compare(a.y, b.y);
+    }
+    private ArrayList<TerrainShapeMessage.TerrainData> createTerrainData(Paths64 paths){
+        Clipper64 clipper = new Clipper64();
+        clipper.AddSubject(paths);
+        PolyTree64 tree = new PolyTree64();
+        clipper.Execute(ClipType.Union, FillRule.Positive, tree);
+        ArrayList<TerrainShapeMessage.TerrainData> terrainDatas = new ArrayList<>();
+        addOutlines(tree, terrainDatas);
+        return terrainDatas;
+    }
+    private void addOutlines(PolyPath64 parent, ArrayList<TerrainShapeMessage.TerrainData> terrainDatas){
+        for(int i = 0;i < parent.getCount();i++){
+            PolyPath64 outline = parent.get(i);
+            ArrayList<TerrainShapeMessage.TerrainPath> holes = new ArrayList<>(outline.getCount());
+            for(int j = 0;j < outline.getCount();j++){
+                PolyPath64 hole = outline.get(j);
+                holes.add(createTerrainPath(Clipper.ReversePath(hole.getPolygon())));
+                addOutlines(hole, terrainDatas);
+            }
+            terrainDatas.add(new TerrainShapeMessage.TerrainData(createTerrainPath(outline.getPolygon()), holes));
+        }
+    }
+    private RectD GetBounds(Path64 path) {
+        RectD result = new RectD(false);
+        for (Point64 pt : path) {
+            if (pt.x < result.left) {
+                result.left = pt.x;
+            }
+            if (pt.x > result.right) {
+                result.right = pt.x;
+            }
+            if (pt.y < result.top) {
+                result.top = pt.y;
+            }
+            if (pt.y > result.bottom) {
+                result.bottom = pt.y;
+            }
+        }
+        if(result.left == Double.MAX_VALUE){
+            return new RectD();
+        }
+        return new RectD(result.left / scale, result.top / scale, result.right / scale, result.bottom / scale);
+    }
+    private RectD GetBounds(Paths64 paths) {
+        RectD result = new RectD(false);
+        for (Path64 path : paths) {
+            RectD bounds = GetBounds(path);
+            result.left = Math.min(result.left, bounds.left);
+            result.top = Math.min(result.top, bounds.top);
+            result.right = Math.max(result.right, bounds.right);
+            result.bottom = Math.max(result.bottom, bounds.bottom);
+        }
+        return result.left == Double.MAX_VALUE ? new RectD() : result;
+    }
+    private Path64 toPath64(PathD path){
+        Path64 result = new Path64(path.size());
+        for(PointD point : path){
+            result.add(new Point64(Math.round(point.x * scale), Math.round(point.y * scale)));
+        }
+        return result;
+    }
+    private TerrainShapeMessage.TerrainPath createTerrainPath(Path64 path){
+        ArrayList<Vector2> messagePath = new ArrayList<>();
+        for (Point64 point : path) {
+            messagePath.add(new Vector2((float) (point.x / scale), (float) (point.y / scale)));
+        }
+        return new TerrainShapeMessage.TerrainPath(messagePath);
+    }
+    public static class TerrainEdit {
+        public final String type;
+        public final PathD shape;
+        public TerrainEdit(String type, PathD shape) {
+            this.type = type;
+            this.shape = shape;
+        }
+    }
+    public static class TerrainUpdate {
+        public final boolean fullResync;
+        public final HashMap<TerrainChunk.ChunkPosition, ChunkUpdate> chunks;
+        public final HashMap<String,Integer> vertexCounts;
+        public TerrainUpdate(boolean fullResync, HashMap<TerrainChunk.ChunkPosition, ChunkUpdate> chunks, HashMap<String,Integer> vertexCounts) {
+            this.fullResync = fullResync;
+            this.chunks = chunks;
+            this.vertexCounts = vertexCounts;
+        }
+    }
+    public static class ChunkUpdate {
+        public final HashMap<String,Paths64> terrain;
+        public final ArrayList<TerrainChunk.ChainSegment> segments;
+        public final TerrainShapeMessage.ChunkData messageData;
+        public ChunkUpdate(HashMap<String,Paths64> terrain, ArrayList<TerrainChunk.ChainSegment> segments, TerrainShapeMessage.ChunkData messageData) {
+            this.terrain = terrain;
+            this.segments = segments;
+            this.messageData = messageData;
+        }
+        public boolean isEmpty(){
+            return terrain.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.industrialcraft.scrapbox.server;
+
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.msg.UdpChannelInfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Datagram side channel for state that is fine to lose, like snapshots. Clients get the port and a token over the
+ * reliable stream and keep sending hellos with the token, which tells the server where to send their datagrams.
+ * <p>
+ * Datagrams are {@link #MAGIC}, a per connection sequence number and one message encoded by the message codec.
+ * Setting the {@code scrapbox.udpLoss} system property to a fraction drops that share of outgoing datagrams, to try
+ * packet loss over localhost.
+ */
+public class UdpChannel {
+    public static final int MAGIC = 0x53425544;
+    //stays below the usual internet MTU so datagrams are not fragmented
+    public static final int MAX_DATAGRAM_SIZE = 1200;
+
+    private final DatagramSocket socket;
+    private final Set<Long> issuedTokens;
+    private final ConcurrentHashMap<Long, SocketAddress> addresses;
+    private final SecureRandom random;
+    private final Random lossRandom;
+    private final float simulatedLoss;
+    private final Thread receiver;
+    public UdpChannel(int port) throws SocketException {
+        this.socket = new DatagramSocket(port);
+        this.issuedTokens = ConcurrentHashMap.newKeySet();
+        this.addresses = new ConcurrentHashMap<>();
+        this.random = new SecureRandom();
+        this.lossRandom = new Random();
+        this.simulatedLoss = Float.parseFloat(System.getProperty("scrapbox.udpLoss", "0"));
+        this.receiver = new Thread(this::receive, "udp receiver");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+    public int getPort(){
+        return this.socket.getLocalPort();
+    }
+    public long createToken(){
+        long token = this.random.nextLong();
+        while(!this.issuedTokens.add(token)){
+            token = this.random.nextLong();
+        }
+        return token;
+    }
+    /**
+     * @return where datagrams for the token go, null until the client's first hello arrived
+     */
+    public SocketAddress getAddress(long token){
+        return this.addresses.get(token);
+    }
+    public void forget(long token){
+        this.issuedTokens.remove(token);
+        this.addresses.remove(token);
+    }
+    public void send(SocketAddress address, byte[] data, int length){
+        if(this.simulatedLoss > 0 && this.lossRandom.nextFloat() < this.simulatedLoss){
+            return;
+        }
+        try {
+            this.socket.send(new DatagramPacket(data, length, address));
+        } catch (IOException ignored){
+            //datagrams are allowed to get lost
+        }
+    }
+    private void receive(){
+        byte[] buffer = new byte[64];
+        while(!this.socket.isClosed()){
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                this.socket.receive(packet);
+                DataInputStream stream = new DataInputStream(new ByteArrayInputStream(packet.getData(), 0, packet.getLength()));
+                if(stream.readInt() != MAGIC){
+                    continue;
+                }
+                long token = stream.readLong();
+                if(this.issuedTokens.contains(token)){
+                    this.addresses.put(token, packet.getSocketAddress());
+                }
+            } catch (IOException ignored){
+                //malformed hello or the socket got closed
+            }
+        }
+    }
+    public void close(){
+        this.socket.close();
+    }
+    /**
+     * One connection's end of the channel, owning its token and datagram sequence.
+     */
+    public class Endpoint{
+        public final long token;
+        private int sequence;
+        public Endpoint() {
+            this.token = createToken();
+            this.sequence = 0;
+        }
+        public UdpChannelInfo createInfo(){
+            return new UdpChannelInfo(getPort(), this.token);
+        }
+        /**
+         * @return false if the message has to go over the stream instead, because no hello arrived yet or it does
+         * not fit a datagram
+         */
+        public boolean send(MessageCodec codec, Object message){
+            SocketAddress address = getAddress(this.token);
+            if(address == null){
+                return false;
+            }
+            ByteArrayOutputStream datagram = new ByteArrayOutputStream();
+            DataOutputStream stream = new DataOutputStream(datagram);
+            try {
+                stream.writeInt(MAGIC);
+                stream.writeInt(this.sequence);
+                codec.write(stream, message);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if(datagram.size() > MAX_DATAGRAM_SIZE){
+                return false;
+            }
+            this.sequence++;
+            UdpChannel.this.send(address, datagram.toByteArray(), datagram.size());
+            return true;
+        }
+        public void forget(){
+            UdpChannel.this.forget(this.token);
+        }
+    }
+}
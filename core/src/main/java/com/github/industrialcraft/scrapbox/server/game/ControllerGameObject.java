@@ -4,7 +4,9 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.physics.box2d.joints.WeldJointDef;
 import com.github.industrialcraft.scrapbox.common.editui.*;
+import com.github.industrialcraft.scrapbox.common.net.msg.ResponseControllerState;
 import com.github.industrialcraft.scrapbox.server.GameObject;
+import com.github.industrialcraft.scrapbox.server.Player;
 import com.github.industrialcraft.scrapbox.server.Server;
 
 import java.io.DataInputStream;
@@ -12,9 +14,11 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 public class ControllerGameObject extends GameObject {
     public final boolean[] inputs;
+    private final HashSet<Player> stateSubscribers;
     private final ControllerButtonData[] buttonData;
     public ControllerGameObject(Vector2 position, float rotation, Server server) {
         super(position, rotation, server);
@@ -33,6 +37,7 @@ public class ControllerGameObject extends GameObject {
         this.setBody("base", "controller", base);
 
         this.inputs = new boolean[10];
+        this.stateSubscribers = new HashSet<>();
         this.buttonData = new ControllerButtonData[10];
         for(int i = 0;i < 10;i++){
             inputs[i] = false;
@@ -44,6 +49,7 @@ public class ControllerGameObject extends GameObject {
         super.tick();
     }
     public void input(int key, boolean down){
+        boolean previous = inputs[key];
         if(buttonData[key].keep){
             if(down){
                 inputs[key] = !inputs[key];
@@ -51,6 +57,27 @@ public class ControllerGameObject extends GameObject {
         } else {
             inputs[key] = down;
         }
+        if(inputs[key] != previous){
+            this.stateSubscribers.removeIf(Player::isRemoved);
+            if(!this.stateSubscribers.isEmpty()){
+                ResponseControllerState message = new ResponseControllerState(inputs.clone());
+                this.stateSubscribers.forEach(player -> player.send(message));
+            }
+        }
+    }
+    public void setStateSubscribed(Player player, boolean subscribed){
+        if(!subscribed){
+            this.stateSubscribers.remove(player);
+            return;
+        }
+        if(this.stateSubscribers.add(player)){
+            player.send(new ResponseControllerState(inputs.clone()));
+        }
+    }
+    @Override
+    public void destroy() {
+        super.destroy();
+        this.stateSubscribers.clear();
     }
 
     @Override
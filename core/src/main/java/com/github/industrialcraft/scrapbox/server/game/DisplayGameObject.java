@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 
 public class DisplayGameObject extends GameObject {
+    private static final ClientWorldManager.AnimationSchema ANIMATION_SCHEMA = ClientWorldManager.AnimationSchema.ofStrings("text");
     public DisplayGameObject(Vector2 position, float rotation, Server server) {
         super(position, rotation, server);
 
@@ -62,6 +63,11 @@ public class DisplayGameObject extends GameObject {
         return edges;
     }
 
+    @Override
+    public ClientWorldManager.AnimationSchema getAnimationSchema() {
+        return ANIMATION_SCHEMA;
+    }
+
     @Override
     public void getAnimationData(ClientWorldManager.AnimationData animationData) {
         animationData.addString("text", ""+Math.floor(getValueOnInput(0)*1000)/1000);
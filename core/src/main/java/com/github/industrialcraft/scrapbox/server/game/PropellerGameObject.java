@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 
 public class PropellerGameObject extends GameObject {
+    private static final ClientWorldManager.AnimationSchema ANIMATION_SCHEMA = ClientWorldManager.AnimationSchema.ofNumbers("speed");
     public float speed;
     public PropellerGameObject(Vector2 position, float rotation, Server server) {
         super(position, rotation, server);
@@ -37,6 +38,11 @@ public class PropellerGameObject extends GameObject {
         this.speed = 0;
     }
 
+    @Override
+    public ClientWorldManager.AnimationSchema getAnimationSchema() {
+        return ANIMATION_SCHEMA;
+    }
+
     @Override
     public void getAnimationData(ClientWorldManager.AnimationData animationData) {
         animationData.addNumber("speed", this.speed);
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 
 public class PunchBoxGameObject extends GameObject {
+    private static final ClientWorldManager.AnimationSchema ANIMATION_SCHEMA = ClientWorldManager.AnimationSchema.ofNumbers("animation");
     private final PrismaticJoint motor;
     public PunchBoxGameObject(Vector2 position, float rotation, Server server) {
         super(position, rotation, server);
@@ -73,6 +74,11 @@ public class PunchBoxGameObject extends GameObject {
         motor.setMotorSpeed(value*100);
     }
 
+    @Override
+    public ClientWorldManager.AnimationSchema getAnimationSchema() {
+        return ANIMATION_SCHEMA;
+    }
+
     @Override
     public void getAnimationData(ClientWorldManager.AnimationData animationData) {
         if(motor != null)
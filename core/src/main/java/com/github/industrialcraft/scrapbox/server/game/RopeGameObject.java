@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.UUID;
 
 public class RopeGameObject extends GameObject {
+    private static final ClientWorldManager.AnimationSchema ANIMATION_SCHEMA = new ClientWorldManager.AnimationSchema(new String[]{"length"}, new String[]{"other"});
     public GameObject other;
     public RopeJoint joint;
     public RopeGameObject(Vector2 position, float rotation, Server server) {
@@ -36,6 +37,11 @@ public class RopeGameObject extends GameObject {
         this.joint = null;
     }
 
+    @Override
+    public ClientWorldManager.AnimationSchema getAnimationSchema() {
+        return ANIMATION_SCHEMA;
+    }
+
     @Override
     public void getAnimationData(ClientWorldManager.AnimationData animationData) {
         if(joint != null)
@@ -0,0 +1,186 @@
+package com.github.industrialcraft.scrapbox.tools;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.github.industrialcraft.netx.ClientMessage;
+import com.github.industrialcraft.netx.NetXClient;
+import com.github.industrialcraft.scrapbox.ClientUdpChannel;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.MessageRegistryCreator;
+import com.github.industrialcraft.scrapbox.common.net.msg.*;
+import com.github.industrialcraft.scrapbox.server.ClientWorldManager;
+import com.github.industrialcraft.scrapbox.server.Server;
+
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks that snapshots still converge when datagrams get lost. A server runs on localhost with
+ * {@code scrapbox.udpLoss} set, one client takes snapshots over the datagram channel and another one only over the
+ * stream. Frames are dropped from the sky, the server gets paused after a while, and once the lossy client had time
+ * to catch up both clients have to agree on where every body is. The exit code is the number of bodies they disagree
+ * on.
+ * <p>
+ * Arguments are the loss fraction, 0.3 by default, and the number of frames, 20 by default.
+ */
+public class SnapshotLossHarness {
+    public static final int RUN_MILLIS = 3000;
+    public static final int SETTLE_MILLIS = 3000;
+    //each client is within the send threshold of the server, plus what the compact encoding rounds off
+    public static final float POSITION_TOLERANCE = 2 * ClientWorldManager.POSITION_THRESHOLD + 0.001f;
+    public static final float ROTATION_TOLERANCE = 2 * ClientWorldManager.ROTATION_THRESHOLD + 0.001f;
+
+    public static void main(String[] args) throws Exception {
+        float loss = args.length > 0 ? Float.parseFloat(args[0]) : 0.3f;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        System.setProperty("scrapbox.udpLoss", Float.toString(loss));
+        Box2D.init();
+        Server server = new Server(0, null, Server.Transport.NETX);
+        server.start();
+        InetSocketAddress address = server.networkServer.getAddress();
+        while(address == null){
+            Thread.sleep(1);
+            address = server.networkServer.getAddress();
+        }
+        Client lossy = new Client(address.getPort(), true);
+        Client reliable = new Client(address.getPort(), false);
+        synchronized (server.physics){
+            for(int i = 0;i < frames;i++){
+                server.spawnGameObject(new Vector2(i * 2 - frames, 10 + i % 3), i * 0.3f, "frame", null);
+            }
+        }
+        poll(RUN_MILLIS, lossy, reliable);
+        synchronized (server.physics){
+            server.paused = true;
+        }
+        poll(SETTLE_MILLIS, lossy, reliable);
+        int mismatches = 0;
+        int compared = 0;
+        for(Map.Entry<Integer, Vector2> entry : reliable.positions.entrySet()){
+            Vector2 position = lossy.positions.get(entry.getKey());
+            if(position == null){
+                //the player bodies are only sent to the other client
+                continue;
+            }
+            compared++;
+            float rotation = lossy.rotations.get(entry.getKey());
+            float expectedRotation = reliable.rotations.get(entry.getKey());
+            float rotationError = Math.abs(MathUtils.atan2(MathUtils.sin(rotation - expectedRotation), MathUtils.cos(rotation - expectedRotation)));
+            if(position.dst(entry.getValue()) > POSITION_TOLERANCE || rotationError > ROTATION_TOLERANCE){
+                System.out.println("body " + entry.getKey() + " is at " + position + " " + rotation + " instead of " + entry.getValue() + " " + expectedRotation);
+                mismatches++;
+            }
+        }
+        System.out.println("loss " + loss + ": " + lossy.snapshots + " snapshots over udp, " + compared + " bodies compared, " + mismatches + " differ");
+        lossy.close();
+        reliable.close();
+        server.stop();
+        System.exit(mismatches);
+    }
+    private static void poll(int millis, Client... clients) throws InterruptedException {
+        long end = System.currentTimeMillis() + millis;
+        while(System.currentTimeMillis() < end){
+            for(Client client : clients){
+                client.poll();
+            }
+            Thread.sleep(5);
+        }
+    }
+    /**
+     * Keeps the pose of every body like the game client does, acknowledging snapshots the same way.
+     */
+    private static class Client{
+        private final NetXClient client;
+        private final MessageCodec codec;
+        private final boolean useUdp;
+        private ClientUdpChannel udpChannel;
+        public final HashMap<Integer, Vector2> positions;
+        public final HashMap<Integer, Float> rotations;
+        private int lastSequence;
+        public int snapshots;
+        private Client(int port, boolean useUdp) {
+            this.codec = MessageRegistryCreator.createCodec();
+            this.client = new NetXClient("localhost", port, this.codec.createRegistry());
+            this.client.start();
+            this.useUdp = useUdp;
+            this.udpChannel = null;
+            this.positions = new HashMap<>();
+            this.rotations = new HashMap<>();
+            this.lastSequence = -1;
+            this.snapshots = 0;
+        }
+        public void poll(){
+            ArrayList<Object> messages = new ArrayList<>();
+            while(this.client.visitMessage(new ClientMessage.Visitor() {
+                @Override
+                public void message(NetXClient user, Object msg) {
+                    if(msg instanceof MessageBatch){
+                        messages.addAll(((MessageBatch) msg).messages);
+                    } else {
+                        messages.add(msg);
+                    }
+                }
+            }));
+            int streamed = messages.size();
+            if(this.udpChannel != null){
+                this.udpChannel.received.drainTo(messages);
+            }
+            for(int i = 0;i < messages.size();i++){
+                Object message = messages.get(i);
+                if(message instanceof WorldSnapshot && i >= streamed){
+                    this.snapshots++;
+                }
+                handle(message);
+            }
+        }
+        private void handle(Object message){
+            if(message instanceof UdpChannelInfo && this.useUdp && this.udpChannel == null){
+                UdpChannelInfo udpChannelInfo = (UdpChannelInfo) message;
+                try {
+                    this.udpChannel = new ClientUdpChannel("localhost", udpChannelInfo.port, udpChannelInfo.token, this.codec);
+                } catch (SocketException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            if(message instanceof AddGameObjectMessage){
+                AddGameObjectMessage addGameObjectMessage = (AddGameObjectMessage) message;
+                this.positions.put(addGameObjectMessage.id, addGameObjectMessage.position);
+                this.rotations.put(addGameObjectMessage.id, addGameObjectMessage.rotation);
+            }
+            if(message instanceof DeleteGameObject){
+                DeleteGameObject deleteGameObject = (DeleteGameObject) message;
+                this.positions.remove(deleteGameObject.id);
+                this.rotations.remove(deleteGameObject.id);
+            }
+            if(message instanceof WorldSnapshot){
+                WorldSnapshot worldSnapshot = (WorldSnapshot) message;
+                if(worldSnapshot.sequence <= this.lastSequence){
+                    return;
+                }
+                this.lastSequence = worldSnapshot.sequence;
+                boolean complete = true;
+                for(MoveGameObjectMessage move : worldSnapshot.bodies){
+                    if(this.positions.containsKey(move.id)){
+                        this.positions.put(move.id, move.position);
+                        this.rotations.put(move.id, move.rotation);
+                    } else {
+                        complete = false;
+                    }
+                }
+                if(complete){
+                    this.client.send(new WorldSnapshotAck(worldSnapshot.sequence));
+                }
+            }
+        }
+        public void close(){
+            if(this.udpChannel != null){
+                this.udpChannel.close();
+            }
+            this.client.disconnect();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.industrialcraft.scrapbox.tools;
+
+import com.badlogic.gdx.math.Vector2;
+import com.github.industrialcraft.netx.ClientMessage;
+import com.github.industrialcraft.netx.NetXClient;
+import com.github.industrialcraft.netx.NetXServer;
+import com.github.industrialcraft.netx.ServerMessage;
+import com.github.industrialcraft.netx.SocketUser;
+import com.github.industrialcraft.scrapbox.common.net.IConnection;
+import com.github.industrialcraft.scrapbox.common.net.MessageCodec;
+import com.github.industrialcraft.scrapbox.common.net.MessageRegistryCreator;
+import com.github.industrialcraft.scrapbox.common.net.msg.MessageBatch;
+import com.github.industrialcraft.scrapbox.common.net.msg.MouseMoved;
+import com.github.industrialcraft.scrapbox.common.net.nio.NioConnection;
+import com.github.industrialcraft.scrapbox.common.net.nio.NioTransport;
+import com.github.industrialcraft.scrapbox.server.Server;
+import com.github.industrialcraft.scrapbox.server.ServerNetXConnection;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Loopback throughput of the server connections of both transports. Small messages are sent and flushed in groups
+ * like a tick would, and the time until the client decoded all of them is measured.
+ * <p>
+ * Arguments are the message count and the transports to run, {@code netx} and {@code nio} by default.
+ */
+public class TransportBenchmark {
+    public static final int MESSAGES_PER_FLUSH = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        String[] transports = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[]{"netx", "nio"};
+        for(String name : transports){
+            Server.Transport transport = Server.Transport.valueOf(name.toUpperCase(Locale.ROOT));
+            //warmup
+            run(transport, messages / 10);
+            long time = run(transport, messages);
+            System.out.printf(Locale.ROOT, "%s: %d messages in %d ms, %.0f messages/s%n", name, messages, time / 1_000_000, messages / (time / 1e9));
+        }
+    }
+    /**
+     * @return nanoseconds from the first send until the last message was received
+     */
+    private static long run(Server.Transport transport, int messages) throws Exception {
+        MessageCodec codec = MessageRegistryCreator.createCodec();
+        if(transport == Server.Transport.NIO){
+            NioTransport server = new NioTransport(codec);
+            server.listen(0);
+            NioTransport client = new NioTransport(codec);
+            NioConnection clientConnection = client.connect("localhost", server.getAddress().getPort());
+            NioConnection serverConnection = server.pollAccepted();
+            while(serverConnection == null){
+                Thread.sleep(1);
+                serverConnection = server.pollAccepted();
+            }
+            long start = System.nanoTime();
+            Thread sender = startSender(serverConnection, messages);
+            int received = 0;
+            while(received < messages){
+                int count = clientConnection.read().size();
+                if(count == 0){
+                    Thread.onSpinWait();
+                }
+                received += count;
+            }
+            long time = System.nanoTime() - start;
+            sender.join();
+            client.close();
+            server.close();
+            return time;
+        }
+        NetXServer server = new NetXServer(0, codec.createRegistry());
+        server.start();
+        InetSocketAddress address = server.getAddress();
+        while(address == null){
+            Thread.sleep(1);
+            address = server.getAddress();
+        }
+        NetXClient client = new NetXClient("localhost", address.getPort(), codec.createRegistry());
+        client.start();
+        SocketUser[] user = new SocketUser[1];
+        while(user[0] == null){
+            if(!server.visitMessage(new ServerMessage.Visitor() {
+                @Override
+                public void connect(SocketUser socketUser) {
+                    user[0] = socketUser;
+                }
+            })){
+                Thread.sleep(1);
+            }
+        }
+        long start = System.nanoTime();
+        Thread sender = startSender(new ServerNetXConnection(user[0], codec, null), messages);
+        int[] received = new int[1];
+        ClientMessage.Visitor visitor = new ClientMessage.Visitor() {
+            @Override
+            public void message(NetXClient user, Object msg) {
+                received[0] += msg instanceof MessageBatch ? ((MessageBatch) msg).messages.size() : 1;
+            }
+        };
+        while(received[0] < messages){
+            if(!client.visitMessage(visitor)){
+                Thread.onSpinWait();
+            }
+        }
+        long time = System.nanoTime() - start;
+        sender.join();
+        client.disconnect();
+        server.close();
+        return time;
+    }
+    private static Thread startSender(IConnection connection, int messages){
+        Thread sender = new Thread(() -> {
+            MouseMoved message = new MouseMoved(new Vector2(12.5f, -3.25f));
+            for(int i = 1;i <= messages;i++){
+                connection.send(message);
+                if(i % MESSAGES_PER_FLUSH == 0){
+                    connection.flush();
+                }
+            }
+            connection.flush();
+        }, "benchmark sender");
+        sender.start();
+        return sender;
+    }
+}